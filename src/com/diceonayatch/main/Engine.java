@@ -5,17 +5,33 @@ import com.diceonayatch.model.EvaluationResult;
 import com.diceonayatch.model.ScoreCategory;
 import com.diceonayatch.service.DiceRollEvaluator;
 import com.diceonayatch.service.DiceRollGenerator;
+import com.diceonayatch.service.GreedyScoringStrategy;
+import com.diceonayatch.service.RandomScoringStrategy;
+import com.diceonayatch.service.RerollOddsEngine;
+import com.diceonayatch.service.TournamentRunner;
 import com.diceonayatch.utils.TestUtils;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 /**
  * Main class for testing the Dice On A Yatch game.
  * Creates the dice roll generator, evaluator, and tests outcomes.
  *
+ * Usage: Engine [games [checkpointFile [seed]]]
+ * When a number of games is given, a tournament between the bots is played.
+ * When a checkpoint file is also given, the tournament is checkpointed every
+ * CHECKPOINT_INTERVAL milliseconds, and running the same command again after
+ * an interruption resumes it.
+ *
  * @author Erik Ynigo 9/4/18.
  */
 public class Engine
 {
-    public static void main(String[] args)
+    private static final long CHECKPOINT_INTERVAL = 10000;
+
+    public static void main(String[] args) throws IOException
     {
         // Example Usage:
 
@@ -32,6 +48,30 @@ public class Engine
         System.out.println("Score for " + chanceResult.category + " category was " + chanceResult.score);
         System.out.println("Highest scoring category was " + bestResult.category + " with " + bestResult.score);
 
+        // Query reroll odds
+        RerollOddsEngine odds = new RerollOddsEngine();
+        double fullHouseOdds = odds.getHitProbability(new int[] {3,3,5}, ScoreCategory.FULL_HOUSE, 2);
+        System.out.println("Odds of a " + ScoreCategory.FULL_HOUSE + " within 2 rerolls holding [3, 3, 5] are " + fullHouseOdds);
+
+        // Play full games between bots
+        if (args.length >= 1)
+        {
+            TournamentRunner tournament = new TournamentRunner(new GreedyScoringStrategy(),
+                    new RandomScoringStrategy());
+            long games = Long.parseLong(args[0]);
+
+            if (args.length >= 2)
+            {
+                Path checkpoint = Paths.get(args[1]);
+                long seed = args.length > 2 ? Long.parseLong(args[2]) : 0;
+                System.out.print(tournament.run(games, seed, checkpoint, CHECKPOINT_INTERVAL));
+            }
+            else
+            {
+                System.out.print(tournament.run(games, System.nanoTime()));
+            }
+        }
+
         // Testing and outcome verification:
         TestUtils.runTests(evaluator);
     }
@@ -37,4 +37,8 @@ public class GameConstants
             ScoreCategory.ALL_SAME,
             ScoreCategory.CHANCE
     };
+
+    // Scorecard mask with every category open. Bit n of a scorecard mask
+    // represents the ScoreCategory with ordinal n.
+    public static int ALL_CATEGORIES_OPEN = (1 << ALL_SCORE_CATEGORIES.length) - 1;
 }
@@ -11,4 +11,8 @@ public class EvaluationResult
 {
     public int score;
     public ScoreCategory category;
+
+    // Number of category evaluations skipped when searching for the highest
+    // scoring category, because they could not have won
+    public int prunedEvaluations;
 }
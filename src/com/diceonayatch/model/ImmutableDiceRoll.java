@@ -0,0 +1,289 @@
+package com.diceonayatch.model;
+
+import com.diceonayatch.metadata.GameConstants;
+
+import java.util.Arrays;
+
+/**
+ * DiceRoll whose results can never change, so that everything derived from
+ * them can be computed once and reused.
+ *
+ * The results are copied on the way in, and getResults() returns a copy, so
+ * no caller can modify them. The following are computed the first time they
+ * are needed, and cached:
+ * - The canonical form, i.e. the same results sorted in ascending order.
+ * - The frequency of each value, the bitmask of values present (bit v is set
+ *   if v was rolled), the highest frequency and the sum of the results.
+ * - The score on each category, as reported by an evaluator through
+ *   cacheScore, so evaluating the same roll again is a lookup. Scores are
+ *   kept under a key chosen by the evaluator, and only returned for that same
+ *   key, so an evaluator never sees scores cached by another one. When a roll
+ *   is evaluated with a different key, the previous scores are dropped.
+ *
+ * The hash code is computed on creation, and equality is based on the results
+ * in order, so instances can be used as map keys. Two rolls with the same
+ * results in a different order share the same canonical form.
+ *
+ * Caching is thread safe. Two threads may compute the same value at the same
+ * time, but they will always compute the same result.
+ *
+ * @author agent 10/19/26.
+ */
+public class ImmutableDiceRoll extends DiceRoll
+{
+    private final int[] results;
+    private final int hash;
+
+    private volatile ImmutableDiceRoll canonical;
+
+    // Derived features. The frequencies are written last, and only read once
+    // they are not null, so the other features are visible to every thread
+    // that sees them
+    private volatile int[] frequencies;
+    private int distinctMask;
+    private int maxFrequency;
+    private int sum;
+
+    private volatile ScoreCache scores;
+
+    public ImmutableDiceRoll(int[] results)
+    {
+        this(copyOf(results), true);
+    }
+
+    /**
+     * Creates an immutable copy of a DiceRoll.
+     *
+     * @param diceRoll The DiceRoll to copy.
+     *
+     * @return The DiceRoll itself if it is already immutable, otherwise a copy.
+     */
+    public static ImmutableDiceRoll of(DiceRoll diceRoll)
+    {
+        if (diceRoll == null)
+        {
+            throw new IllegalArgumentException("DiceRoll cannot be null.");
+        }
+
+        if (diceRoll instanceof ImmutableDiceRoll)
+        {
+            return (ImmutableDiceRoll) diceRoll;
+        }
+
+        return new ImmutableDiceRoll(diceRoll.getResults());
+    }
+
+    private ImmutableDiceRoll(int[] results, boolean validate)
+    {
+        super(results);
+
+        if (validate)
+        {
+            for (int result : results)
+            {
+                if (result < 1 || result > GameConstants.VALUES_PER_DIE)
+                {
+                    throw new IllegalArgumentException("Result " + result + " is not a valid value. "
+                            + "Values must be between 1 and " + GameConstants.VALUES_PER_DIE + ".");
+                }
+            }
+        }
+
+        this.results = results;
+        this.hash = Arrays.hashCode(results);
+    }
+
+    /**
+     * Returns a copy of the results, as they cannot be modified.
+     */
+    @Override
+    public int[] getResults()
+    {
+        return results.clone();
+    }
+
+    /**
+     * Returns the same results sorted in ascending order, which is the same
+     * for every permutation of the results.
+     */
+    public ImmutableDiceRoll getCanonical()
+    {
+        ImmutableDiceRoll sorted = canonical;
+
+        if (sorted == null)
+        {
+            int[] copy = results.clone();
+            Arrays.sort(copy);
+
+            sorted = Arrays.equals(copy, results) ? this : new ImmutableDiceRoll(copy, false);
+            sorted.canonical = sorted;
+            canonical = sorted;
+        }
+
+        return sorted;
+    }
+
+    /**
+     * Returns the number of times the given value was rolled.
+     */
+    public int getFrequency(int value)
+    {
+        int[] table = getFrequencies();
+        return value < 0 || value >= table.length ? 0 : table[value];
+    }
+
+    /**
+     * Returns the bitmask of rolled values, where bit v is set if the value v
+     * was rolled at least once.
+     */
+    public int getDistinctMask()
+    {
+        getFrequencies();
+        return distinctMask;
+    }
+
+    /**
+     * Returns the number of different values rolled.
+     */
+    public int getDistinctCount()
+    {
+        return Integer.bitCount(getDistinctMask());
+    }
+
+    /**
+     * Returns the number of times the most repeated value was rolled.
+     */
+    public int getMaxFrequency()
+    {
+        getFrequencies();
+        return maxFrequency;
+    }
+
+    /**
+     * Returns the sum of all results.
+     */
+    public int getSum()
+    {
+        getFrequencies();
+        return sum;
+    }
+
+    /**
+     * Returns the score of the roll on the given category, if it was cached
+     * under the given key.
+     *
+     * @param key      The key the score was cached under.
+     * @param category The ScoreCategory to look up.
+     *
+     * @return The score, or -1 if it has not been cached under this key.
+     */
+    public int getCachedScore(Object key, ScoreCategory category)
+    {
+        ScoreCache cache = scores;
+        return cache == null || cache.key != key ? -1 : cache.scores[category.ordinal()] - 1;
+    }
+
+    /**
+     * Caches the score of the roll on a category. Meant to be called by
+     * evaluators, which are responsible for the score being right, with a key
+     * that only they hold.
+     *
+     * @param key      The key to cache the score under, compared by identity.
+     * @param category The ScoreCategory that was evaluated.
+     * @param score    The score of the roll on the category.
+     */
+    public void cacheScore(Object key, ScoreCategory category, int score)
+    {
+        if (key == null)
+        {
+            throw new IllegalArgumentException("Key cannot be null.");
+        }
+
+        if (score < 0)
+        {
+            throw new IllegalArgumentException("Score cannot be negative.");
+        }
+
+        ScoreCache cache = scores;
+
+        if (cache == null || cache.key != key)
+        {
+            cache = new ScoreCache(key);
+            scores = cache;
+        }
+
+        // A plain write, as a thread that misses it just evaluates again
+        cache.scores[category.ordinal()] = score + 1;
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        if (this == other)
+        {
+            return true;
+        }
+
+        if (!(other instanceof ImmutableDiceRoll))
+        {
+            return false;
+        }
+
+        ImmutableDiceRoll roll = (ImmutableDiceRoll) other;
+        return hash == roll.hash && Arrays.equals(results, roll.results);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hash;
+    }
+
+    private int[] getFrequencies()
+    {
+        int[] table = frequencies;
+
+        if (table == null)
+        {
+            table = new int[GameConstants.VALUES_PER_DIE + 1];
+            int mask = 0;
+            int max = 0;
+            int total = 0;
+
+            for (int result : results)
+            {
+                table[result]++;
+                mask |= 1 << result;
+                max = Math.max(max, table[result]);
+                total += result;
+            }
+
+            distinctMask = mask;
+            maxFrequency = max;
+            sum = total;
+            frequencies = table;
+        }
+
+        return table;
+    }
+
+    /**
+     * Scores cached under a key, plus one for every category, indexed by
+     * ordinal, 0 if unknown.
+     */
+    private static final class ScoreCache
+    {
+        final Object key;
+        final int[] scores = new int[ScoreCategory.values().length];
+
+        ScoreCache(Object key)
+        {
+            this.key = key;
+        }
+    }
+
+    private static int[] copyOf(int[] results)
+    {
+        return results == null ? null : results.clone();
+    }
+}
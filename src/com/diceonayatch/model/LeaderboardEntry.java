@@ -0,0 +1,22 @@
+package com.diceonayatch.model;
+
+/**
+ * Transfer object representing a line of a leaderboard. For the high score
+ * table the value is the best total score of the player, and for category
+ * records it is the number of times the player scored in the category.
+ *
+ * @author agent 10/19/26.
+ */
+public class LeaderboardEntry
+{
+    public String playerId;
+    public long value;
+
+    // 1-based, players with the same value share the same rank
+    public int rank;
+
+    public String toString()
+    {
+        return rank + ". " + playerId + " (" + value + ")";
+    }
+}
@@ -0,0 +1,109 @@
+package com.diceonayatch.model;
+
+/**
+ * Transfer object representing the exact probability distribution of the
+ * total score of a game, played from a given scorecard with a fixed
+ * ScoringStrategy.
+ *
+ * @author agent 10/19/26.
+ */
+public class ScoreDistribution
+{
+    public String strategyName;
+
+    // Scorecard mask of the categories left to play, see
+    // GameConstants.ALL_CATEGORIES_OPEN
+    public int openCategories;
+
+    // Probability of each total score, indexed by score
+    public double[] probabilities;
+
+    // Number of scorecard states solved, and the time it took
+    public int statesEvaluated;
+    public long elapsedNanos;
+
+    public double getProbability(int score)
+    {
+        return score < 0 || score >= probabilities.length ? 0 : probabilities[score];
+    }
+
+    /**
+     * Returns the probability of a total score lower than or equal to the
+     * given one.
+     */
+    public double getCumulativeProbability(int score)
+    {
+        double sum = 0;
+
+        for (int s = 0; s <= score && s < probabilities.length; s++)
+        {
+            sum += probabilities[s];
+        }
+
+        return Math.min(1, sum);
+    }
+
+    public double getMean()
+    {
+        double sum = 0;
+
+        for (int score = 0; score < probabilities.length; score++)
+        {
+            sum += score * probabilities[score];
+        }
+
+        return sum;
+    }
+
+    public double getStandardDeviation()
+    {
+        double mean = getMean();
+        double sum = 0;
+
+        for (int score = 0; score < probabilities.length; score++)
+        {
+            sum += (score - mean) * (score - mean) * probabilities[score];
+        }
+
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Returns the lowest total score such that the probability of scoring that
+     * much or less is at least the given fraction. E.g. 0.5 returns the median.
+     *
+     * @param fraction A value between 0 and 1.
+     *
+     * @return The total score at the given percentile.
+     */
+    public int getPercentile(double fraction)
+    {
+        double sum = 0;
+
+        for (int score = 0; score < probabilities.length; score++)
+        {
+            sum += probabilities[score];
+
+            // Tolerate rounding errors in the accumulated probabilities
+            if (sum >= fraction - 1e-12)
+            {
+                return score;
+            }
+        }
+
+        return probabilities.length - 1;
+    }
+
+    /**
+     * Creates a printable summary of the distribution.
+     *
+     * @return The distribution in printable form.
+     */
+    public String toString()
+    {
+        return String.format("%s: %d states in %.2f s. Mean: %.4f  StdDev: %.4f  P1/P10/P50/P90/P99: %d/%d/%d/%d/%d%n",
+                strategyName, statesEvaluated, elapsedNanos / 1e9, getMean(), getStandardDeviation(),
+                getPercentile(0.01), getPercentile(0.1), getPercentile(0.5), getPercentile(0.9),
+                getPercentile(0.99));
+    }
+}
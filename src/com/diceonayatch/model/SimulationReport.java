@@ -0,0 +1,73 @@
+package com.diceonayatch.model;
+
+/**
+ * Transfer object representing the outcome of an adaptive Monte Carlo
+ * simulation. Per-category values are stored in the same order as the
+ * categories array.
+ *
+ * @author agent 10/19/26.
+ */
+public class SimulationReport
+{
+    public ScoreCategory[] categories;
+
+    // Estimated expected score, and half-width of its confidence interval
+    public double[] means;
+    public double[] halfWidths;
+
+    // Rolls plain random sampling would need to reach the same half-width
+    public long[] naiveRollsNeeded;
+
+    public double targetHalfWidth;
+
+    public long rollsUsed;
+
+    // False if the maximum number of rolls was reached before every estimate
+    // reached the target half-width
+    public boolean converged;
+
+    /**
+     * Returns the number of rolls plain random sampling would need to reach
+     * the target for every category.
+     */
+    public long getNaiveRollsNeeded()
+    {
+        long max = 0;
+
+        for (long rolls : naiveRollsNeeded)
+        {
+            max = Math.max(max, rolls);
+        }
+
+        return max;
+    }
+
+    /**
+     * Returns how many fewer rolls were used compared to plain random sampling.
+     */
+    public long getRollsSaved()
+    {
+        return getNaiveRollsNeeded() - rollsUsed;
+    }
+
+    /**
+     * Creates a printable summary of the simulation, one line per category.
+     *
+     * @return The results in printable form.
+     */
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%s after %d rolls. Naive sampling would need %d rolls (%d saved)%n",
+                converged ? "Converged" : "Did not converge", rollsUsed, getNaiveRollsNeeded(),
+                getRollsSaved()));
+
+        for (int i = 0; i < categories.length; i++)
+        {
+            sb.append(String.format("%-18s Expected: %9.4f +/- %.4f  Naive rolls needed: %d%n",
+                    categories[i], means[i], halfWidths[i], naiveRollsNeeded[i]));
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,167 @@
+package com.diceonayatch.model;
+
+/**
+ * Transfer object representing the outcome of a bot tournament. Each game
+ * is played by every strategy on its own rolls, and the strategy with the
+ * highest total score wins. Strategies are reported in the order they were
+ * given to the TournamentRunner.
+ *
+ * @author agent 10/19/26.
+ */
+public class TournamentResult
+{
+    public String[] strategyNames;
+
+    public long games;
+
+    // Games won outright, and games where the highest score was shared
+    public long[] wins;
+    public long[] ties;
+
+    // Number of games that ended with each total score, as [strategy][score]
+    public long[][] scoreHistograms;
+
+    // Sum of the scores placed in each category, as [strategy][category ordinal]
+    public long[][] categoryScoreTotals;
+
+    // Time spent playing games for each strategy, summed across all threads
+    public long[] strategyNanos;
+
+    public long elapsedNanos;
+
+    public int threads;
+
+    // Games loaded from a checkpoint instead of being played by this run
+    public long resumedGames;
+
+    // Checkpoints written during the run, the time spent writing them, and
+    // the size of the last one
+    public int checkpoints;
+    public long checkpointNanos;
+    public long checkpointBytes;
+
+    public double getWinRate(int strategy)
+    {
+        return games == 0 ? 0 : (double) wins[strategy] / games;
+    }
+
+    public double getTieRate(int strategy)
+    {
+        return games == 0 ? 0 : (double) ties[strategy] / games;
+    }
+
+    public double getMeanScore(int strategy)
+    {
+        long[] histogram = scoreHistograms[strategy];
+        double sum = 0;
+
+        for (int score = 0; score < histogram.length; score++)
+        {
+            sum += (double) score * histogram[score];
+        }
+
+        return games == 0 ? 0 : sum / games;
+    }
+
+    public double getScoreStandardDeviation(int strategy)
+    {
+        long[] histogram = scoreHistograms[strategy];
+        double mean = getMeanScore(strategy);
+        double sum = 0;
+
+        for (int score = 0; score < histogram.length; score++)
+        {
+            sum += (score - mean) * (score - mean) * histogram[score];
+        }
+
+        return games == 0 ? 0 : Math.sqrt(sum / games);
+    }
+
+    public double getMeanCategoryScore(int strategy, ScoreCategory category)
+    {
+        return games == 0 ? 0 : (double) categoryScoreTotals[strategy][category.ordinal()] / games;
+    }
+
+    /**
+     * Returns the fraction of the elapsed time spent writing checkpoints.
+     */
+    public double getCheckpointOverhead()
+    {
+        return elapsedNanos == 0 ? 0 : (double) checkpointNanos / elapsedNanos;
+    }
+
+    /**
+     * Returns the lowest total score such that at least the given fraction of
+     * the games scored that much or less. E.g. 0.5 returns the median.
+     *
+     * @param strategy The strategy index.
+     * @param fraction A value between 0 and 1.
+     *
+     * @return The total score at the given percentile.
+     */
+    public int getScorePercentile(int strategy, double fraction)
+    {
+        long[] histogram = scoreHistograms[strategy];
+        long target = (long) Math.ceil(fraction * games);
+        long seen = 0;
+
+        for (int score = 0; score < histogram.length; score++)
+        {
+            seen += histogram[score];
+
+            if (seen >= target && seen > 0)
+            {
+                return score;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Returns the number of games completed per second of wall clock time,
+     * for all strategies together. Resumed games are not included.
+     */
+    public double getGamesPerSecond()
+    {
+        return elapsedNanos == 0 ? 0 : (games - resumedGames) / (elapsedNanos / 1e9);
+    }
+
+    /**
+     * Returns the number of games a single thread plays per second with the
+     * given strategy, based on the time spent on its games alone.
+     */
+    public double getGamesPerSecond(int strategy)
+    {
+        return strategyNanos[strategy] == 0 ? 0 : games / (strategyNanos[strategy] / 1e9);
+    }
+
+    /**
+     * Creates a printable summary of the tournament, one line per strategy.
+     *
+     * @return The results in printable form.
+     */
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d games on %d threads in %.2f s (%.0f games/s)%n",
+                games, threads, elapsedNanos / 1e9, getGamesPerSecond()));
+
+        if (resumedGames > 0 || checkpoints > 0)
+        {
+            sb.append(String.format("Resumed %d games. %d checkpoints of %d bytes, overhead: %.2f%%%n",
+                    resumedGames, checkpoints, checkpointBytes, 100 * getCheckpointOverhead()));
+        }
+
+        for (int i = 0; i < strategyNames.length; i++)
+        {
+            sb.append(String.format("%-12s Win: %6.2f%%  Tie: %6.2f%%  Mean: %7.2f  StdDev: %6.2f  "
+                            + "P10/P50/P90: %d/%d/%d  Games/s per thread: %.0f%n",
+                    strategyNames[i], 100 * getWinRate(i), 100 * getTieRate(i), getMeanScore(i),
+                    getScoreStandardDeviation(i), getScorePercentile(i, 0.1),
+                    getScorePercentile(i, 0.5), getScorePercentile(i, 0.9), getGamesPerSecond(i)));
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,491 @@
+package com.diceonayatch.service;
+
+import com.diceonayatch.model.DiceRoll;
+import com.diceonayatch.model.ScoreCategory;
+import com.diceonayatch.model.SimulationReport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Estimates the expected score of a single roll in several categories, for
+ * scoring rules that cannot be computed exactly (e.g. house rule variants
+ * implemented as a RollScorer), and stops as soon as every estimate is
+ * precise enough.
+ *
+ * Two variance reduction techniques are combined:
+ *
+ * Stratified sampling:
+ * Rolls are split into classes by the pattern of their canonical form (all
+ * the same, four of a kind, full house, ..., all different). The probability
+ * of each class is known exactly from the CanonicalRollSpace, so only the
+ * variance within each class remains, and after a pilot round more rolls are
+ * allocated to the classes with the highest variance (Neyman allocation).
+ *
+ * Control variate:
+ * The standard score of a known category (CHANCE by default) is recorded for
+ * every roll. Its exact mean within each class is known, so the estimate is
+ * corrected by how far the sampled control mean is from the real one.
+ *
+ * Antithetic pairs, i.e. scoring every roll together with its mirror roll
+ * where each die shows VALUES_PER_DIE + 1 minus its value, are not used. Most
+ * categories score a roll and its mirror alike (straights, full house, all
+ * same, ...), so a pair costs two rolls for little more than the variance
+ * reduction of one. In practice, pairs needed more rolls than plain sampling
+ * to reach the same precision.
+ *
+ * Sampling happens in rounds, and stops once the confidence interval of every
+ * requested category is narrower than the target, or the maximum number of
+ * rolls is reached.
+ *
+ * Rolls are drawn from a seeded Random owned by the simulator rather than
+ * from a DiceRollGenerator, as stratified sampling has to draw a roll from a
+ * given class. The same Random is used by every run, so runs are only
+ * reproducible when they happen one at a time, and an instance should not be
+ * shared between threads. Use one simulator per thread instead.
+ *
+ * @author agent 10/19/26.
+ */
+public class AdaptiveMonteCarloSimulator
+{
+    // z-score for a 95% two-sided confidence interval
+    public static final double Z_95 = 1.959963984540054;
+
+    // Sampling units taken from every class before allocating adaptively
+    private static final int PILOT_UNITS = 64;
+
+    private static final int MIN_ROUND_UNITS = 1024;
+
+    private final RollScorer scorer;
+    private final ScoreCategory controlCategory;
+    private final Random random;
+    private final CanonicalRollSpace space;
+
+    // Roll classes
+    private final int[][] strataRolls;
+    private final double[] strataProbabilities;
+    private final double[] strataControlMeans;
+
+    public AdaptiveMonteCarloSimulator(long seed)
+    {
+        this(new DiceRollEvaluator(), ScoreCategory.CHANCE, seed);
+    }
+
+    /**
+     * Creates a simulator.
+     *
+     * @param scorer          The scoring rules to estimate.
+     * @param controlCategory The category whose standard score is used as control
+     *                        variate, or null to not use one.
+     * @param seed            The seed for the random rolls.
+     */
+    public AdaptiveMonteCarloSimulator(RollScorer scorer, ScoreCategory controlCategory, long seed)
+    {
+        if (scorer == null)
+        {
+            throw new IllegalArgumentException("RollScorer cannot be null.");
+        }
+
+        this.scorer = scorer;
+        this.controlCategory = controlCategory;
+        this.random = new Random(seed);
+        this.space = CanonicalRollSpace.getInstance();
+
+        // Group canonical rolls by the multiplicities of their faces
+        HashMap<Integer, List<Integer>> patterns = new HashMap<Integer, List<Integer>>();
+        List<Integer> order = new ArrayList<Integer>();
+
+        for (int roll = 0; roll < space.getRollCount(); roll++)
+        {
+            int pattern = getPattern(space.getRollFaces(roll));
+
+            if (!patterns.containsKey(pattern))
+            {
+                patterns.put(pattern, new ArrayList<Integer>());
+                order.add(pattern);
+            }
+
+            patterns.get(pattern).add(roll);
+        }
+
+        double outcomes = Math.pow(space.getValuesPerDie(), space.getNumberOfDice());
+
+        strataRolls = new int[order.size()][];
+        strataProbabilities = new double[order.size()];
+        strataControlMeans = new double[order.size()];
+
+        for (int h = 0; h < order.size(); h++)
+        {
+            List<Integer> rolls = patterns.get(order.get(h));
+            strataRolls[h] = new int[rolls.size()];
+
+            double probability = 0;
+            double control = 0;
+
+            for (int i = 0; i < rolls.size(); i++)
+            {
+                int roll = rolls.get(i);
+                double p = space.getRollPermutations(roll) / outcomes;
+
+                strataRolls[h][i] = roll;
+                probability += p;
+                control += p * (controlCategory == null ? 0 : space.getScore(roll, controlCategory));
+            }
+
+            strataProbabilities[h] = probability;
+            strataControlMeans[h] = control / probability;
+        }
+    }
+
+    /**
+     * Returns the number of roll classes used for stratification.
+     */
+    public int getStrataCount()
+    {
+        return strataRolls.length;
+    }
+
+    /**
+     * Estimates the expected score for each category, until the confidence
+     * interval of every estimate is at most targetHalfWidth on each side.
+     *
+     * @param categories      The categories to estimate.
+     * @param targetHalfWidth The maximum half-width of the confidence intervals.
+     * @param zScore          The z-score of the confidence level, e.g. Z_95.
+     * @param maxRolls        The maximum number of rolls to sample.
+     *
+     * @return A SimulationReport with the estimates, and the number of rolls used
+     *         compared to plain random sampling.
+     */
+    public SimulationReport run(ScoreCategory[] categories, double targetHalfWidth, double zScore,
+        long maxRolls)
+    {
+        if (categories == null || categories.length == 0)
+        {
+            throw new IllegalArgumentException("At least one ScoreCategory is required.");
+        }
+
+        if (targetHalfWidth <= 0 || zScore <= 0)
+        {
+            throw new IllegalArgumentException("Target half-width and z-score must be positive.");
+        }
+
+        Accumulator acc = new Accumulator(strataRolls.length, categories.length);
+
+        // Pilot round, so every class has a variance estimate
+        long[] allocation = new long[strataRolls.length];
+        for (int h = 0; h < allocation.length; h++)
+        {
+            allocation[h] = PILOT_UNITS;
+        }
+
+        SimulationReport report;
+
+        while (true)
+        {
+            sample(categories, allocation, acc, maxRolls);
+            report = buildReport(categories, acc, targetHalfWidth, zScore);
+
+            long units = acc.totalUnits();
+            report.rollsUsed = units;
+
+            if (report.converged || units >= maxRolls)
+            {
+                break;
+            }
+
+            // Variance shrinks as 1 / n, so project the units needed from the
+            // widest interval, without more than doubling per round
+            double worst = 0;
+            for (double halfWidth : report.halfWidths)
+            {
+                worst = Math.max(worst, halfWidth / targetHalfWidth);
+            }
+
+            long needed = (long) Math.ceil(units * worst * worst);
+            long round = Math.max(MIN_ROUND_UNITS, Math.min(needed - units, units));
+
+            allocate(acc, round, allocation);
+        }
+
+        return report;
+    }
+
+    /**
+     * Takes the given number of sampling units from each class.
+     */
+    private void sample(ScoreCategory[] categories, long[] allocation, Accumulator acc, long maxUnits)
+    {
+        int dice = space.getNumberOfDice();
+        int[] results = new int[dice];
+        DiceRoll diceRoll = new DiceRoll(results);
+
+        for (int h = 0; h < allocation.length; h++)
+        {
+            int[] rolls = strataRolls[h];
+
+            for (long u = 0; u < allocation[h] && acc.totalUnits() < maxUnits; u++)
+            {
+                // Every canonical roll in a class has the same number of
+                // permutations, so they are equally likely
+                int roll = rolls[random.nextInt(rolls.length)];
+                System.arraycopy(space.getRollFaces(roll), 0, results, 0, dice);
+                shuffle(results);
+
+                double x = controlCategory == null ? 0 : space.getScore(roll, controlCategory);
+                acc.addControl(h, x);
+
+                for (int c = 0; c < categories.length; c++)
+                {
+                    acc.addUnit(h, c, x, scorer.score(diceRoll, categories[c]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits the units of the next round so that the total for each class
+     * moves towards the Neyman allocation, proportional to the probability of
+     * the class times its (worst) standard deviation.
+     */
+    private void allocate(Accumulator acc, long round, long[] allocation)
+    {
+        double[] weights = new double[strataRolls.length];
+        double totalWeight = 0;
+
+        for (int h = 0; h < weights.length; h++)
+        {
+            double deviation = 0;
+
+            for (int c = 0; c < acc.categories; c++)
+            {
+                deviation = Math.max(deviation, Math.sqrt(acc.adjustedVariance(h, c)));
+            }
+
+            weights[h] = strataProbabilities[h] * deviation;
+            totalWeight += weights[h];
+        }
+
+        long total = acc.totalUnits() + round;
+
+        for (int h = 0; h < weights.length; h++)
+        {
+            long target = totalWeight == 0 ? 0 : (long) Math.ceil(total * weights[h] / totalWeight);
+            allocation[h] = Math.max(0, target - acc.units[h]);
+        }
+    }
+
+    private SimulationReport buildReport(ScoreCategory[] categories, Accumulator acc,
+        double targetHalfWidth, double zScore)
+    {
+        SimulationReport report = new SimulationReport();
+        report.categories = categories.clone();
+        report.means = new double[categories.length];
+        report.halfWidths = new double[categories.length];
+        report.naiveRollsNeeded = new long[categories.length];
+        report.targetHalfWidth = targetHalfWidth;
+        report.converged = true;
+
+        for (int c = 0; c < categories.length; c++)
+        {
+            double mean = 0;
+            double variance = 0;
+
+            for (int h = 0; h < strataRolls.length; h++)
+            {
+                double p = strataProbabilities[h];
+
+                // Can only happen if maxRolls did not even cover the pilot round
+                if (acc.units[h] == 0)
+                {
+                    variance = Double.POSITIVE_INFINITY;
+                    continue;
+                }
+
+                mean += p * acc.adjustedMean(h, c, strataControlMeans[h]);
+                variance += p * p * acc.adjustedVariance(h, c) / acc.units[h];
+            }
+
+            // Variance of a single plain random roll, from the within class and
+            // between class variances
+            double naiveVariance = 0;
+
+            for (int h = 0; h < strataRolls.length; h++)
+            {
+                double deviation = acc.rollMean(h, c) - mean;
+                naiveVariance += strataProbabilities[h] * (acc.rollVariance(h, c) + deviation * deviation);
+            }
+
+            report.means[c] = mean;
+            report.halfWidths[c] = zScore * Math.sqrt(variance);
+            report.naiveRollsNeeded[c] = (long) Math.ceil(zScore * zScore * naiveVariance
+                    / (targetHalfWidth * targetHalfWidth));
+
+            if (report.halfWidths[c] > targetHalfWidth)
+            {
+                report.converged = false;
+            }
+        }
+
+        return report;
+    }
+
+    private void shuffle(int[] values)
+    {
+        for (int i = values.length - 1; i > 0; i--)
+        {
+            int j = random.nextInt(i + 1);
+            int tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+    }
+
+    /**
+     * Encodes the multiplicities of the faces of a sorted roll, in descending
+     * order, e.g. {1,1,1,8,8} -> 32.
+     */
+    private static int getPattern(int[] sortedFaces)
+    {
+        int[] runs = new int[sortedFaces.length];
+        int count = 0;
+        int run = 1;
+
+        for (int i = 1; i <= sortedFaces.length; i++)
+        {
+            if (i < sortedFaces.length && sortedFaces[i] == sortedFaces[i - 1])
+            {
+                run++;
+            }
+            else
+            {
+                runs[count++] = run;
+                run = 1;
+            }
+        }
+
+        Arrays.sort(runs, 0, count);
+
+        int pattern = 0;
+        for (int i = count - 1; i >= 0; i--)
+        {
+            pattern = pattern * 10 + runs[i];
+        }
+
+        return pattern;
+    }
+
+    /**
+     * Running sums for every class and category. A unit is a single roll.
+     */
+    private static class Accumulator
+    {
+        final int categories;
+
+        final long[] units;
+        final double[] sumX;
+        final double[] sumXX;
+
+        // Indexed by [stratum][category]
+        final double[][] sumY;
+        final double[][] sumYY;
+        final double[][] sumXY;
+
+        Accumulator(int strata, int categories)
+        {
+            this.categories = categories;
+            units = new long[strata];
+            sumX = new double[strata];
+            sumXX = new double[strata];
+            sumY = new double[strata][categories];
+            sumYY = new double[strata][categories];
+            sumXY = new double[strata][categories];
+        }
+
+        void addControl(int h, double x)
+        {
+            units[h]++;
+            sumX[h] += x;
+            sumXX[h] += x * x;
+        }
+
+        void addUnit(int h, int c, double x, double y)
+        {
+            sumY[h][c] += y;
+            sumYY[h][c] += y * y;
+            sumXY[h][c] += x * y;
+        }
+
+        long totalUnits()
+        {
+            long total = 0;
+
+            for (long n : units)
+            {
+                total += n;
+            }
+
+            return total;
+        }
+
+        /**
+         * Slope of the regression of the category on the control variate.
+         */
+        double beta(int h, int c)
+        {
+            double n = units[h];
+            double varianceX = sumXX[h] - sumX[h] * sumX[h] / n;
+
+            // A constant control carries no information
+            if (varianceX <= 1e-9 * n)
+            {
+                return 0;
+            }
+
+            return (sumXY[h][c] - sumX[h] * sumY[h][c] / n) / varianceX;
+        }
+
+        double adjustedMean(int h, int c, double controlMean)
+        {
+            double n = units[h];
+            return sumY[h][c] / n - beta(h, c) * (sumX[h] / n - controlMean);
+        }
+
+        double adjustedVariance(int h, int c)
+        {
+            double n = units[h];
+
+            if (n < 2)
+            {
+                return 0;
+            }
+
+            double beta = beta(h, c);
+            double varianceY = (sumYY[h][c] - sumY[h][c] * sumY[h][c] / n) / (n - 1);
+            double varianceX = (sumXX[h] - sumX[h] * sumX[h] / n) / (n - 1);
+            double covariance = (sumXY[h][c] - sumX[h] * sumY[h][c] / n) / (n - 1);
+
+            return Math.max(0, varianceY - 2 * beta * covariance + beta * beta * varianceX);
+        }
+
+        /**
+         * Mean of the category within the class, without the control variate.
+         */
+        double rollMean(int h, int c)
+        {
+            return units[h] == 0 ? 0 : sumY[h][c] / units[h];
+        }
+
+        /**
+         * Variance of the category within the class, without the control variate.
+         */
+        double rollVariance(int h, int c)
+        {
+            double n = units[h];
+            return n < 2 ? 0 : Math.max(0, (sumYY[h][c] - sumY[h][c] * sumY[h][c] / n) / (n - 1));
+        }
+    }
+}
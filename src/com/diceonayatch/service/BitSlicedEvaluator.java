@@ -0,0 +1,493 @@
+package com.diceonayatch.service;
+
+import com.diceonayatch.metadata.GameConstants;
+import com.diceonayatch.model.ScoreCategory;
+
+/**
+ * Bulk evaluator that scores 64 rolls at a time using only bitwise operations
+ * on longs, as an alternative to DiceRollEvaluator for offline scoring of large
+ * numbers of rolls.
+ *
+ * The rolls of a block are transposed into bit-planes: for every die there is
+ * one long per bit of (value - 1), where bit i of the long belongs to roll i.
+ * With eight-sided dice that is 3 planes per die. Every intermediate number
+ * (face counts, distinct faces, sums and scores) is kept in the same
+ * bit-sliced form, so a single AND/OR/XOR works on the 64 rolls at once:
+ * - Face equality masks are ANDs of planes or their complements.
+ * - Face counts and the number of distinct faces are built with bit-sliced
+ *   incrementers.
+ * - Straights are detected from the number of adjacent faces that are both
+ *   present, like the gap count used by DiceRollEvaluator.
+ * - The best category is picked with bit-sliced comparisons, walking the
+ *   categories in GameConstants.ALL_SCORE_CATEGORIES order, so ties are broken
+ *   exactly as in DiceRollEvaluator.getHighestScoringCategory.
+ *
+ * Instances keep scratch buffers and are not thread safe. Use one per thread.
+ *
+ * @author agent 10/19/26.
+ */
+public class BitSlicedEvaluator
+{
+    public static final int BLOCK_SIZE = 64;
+
+    private static final ScoreCategory[] CATEGORIES = ScoreCategory.values();
+
+    private final int dice;
+    private final int faces;
+
+    // Planes needed to store (value - 1) for a die
+    private final int faceBits;
+
+    // Width of every bit-sliced number, enough for the highest possible score
+    private final int valueBits;
+
+    // Scratch buffers, reused for every block
+    private final long[][] diePlanes;
+    private final long[][] faceCounts;
+    private final long[] facePresent;
+    private final long[] distinct;
+    private final long[] adjacent;
+    private final long[] sum;
+    private final long[][] scores;
+    private final long[] best;
+    private final long[] bestCategory;
+    private final long[] tmp;
+    private final long[] constant;
+
+    public BitSlicedEvaluator()
+    {
+        this.dice = GameConstants.TOTAL_NUMBER_OF_DICE;
+        this.faces = GameConstants.VALUES_PER_DIE;
+        this.faceBits = Math.max(1, bitsFor(faces - 1));
+
+        int maxScore = Math.max(faces * dice, Math.max(GameConstants.SCORE_ALL_SAME,
+                Math.max(GameConstants.SCORE_ALL_DIFFERENT, Math.max(GameConstants.SCORE_STRAIGTH_LARGE,
+                        Math.max(GameConstants.SCORE_STRAIGTH_SMALL, GameConstants.SCORE_FULL_HOUSE)))));
+        this.valueBits = Math.max(bitsFor(maxScore), bitsFor(CATEGORIES.length));
+
+        diePlanes = new long[dice][faceBits];
+        faceCounts = new long[faces + 1][valueBits];
+        facePresent = new long[faces + 2];
+        distinct = new long[valueBits];
+        adjacent = new long[valueBits];
+        sum = new long[valueBits];
+        scores = new long[CATEGORIES.length][valueBits];
+        best = new long[valueBits];
+        bestCategory = new long[valueBits];
+        tmp = new long[valueBits];
+        constant = new long[valueBits];
+    }
+
+    /**
+     * Evaluates up to BLOCK_SIZE rolls.
+     *
+     * @param results          The value of each die, roll after roll, i.e. the value of
+     *                         die d of roll i is at offset + i * dice + d.
+     * @param offset           The index of the first value of the block.
+     * @param count            The number of rolls in the block, at most BLOCK_SIZE.
+     * @param categoryScores   Optional output for the score of every roll on every
+     *                         category, as [category.ordinal() * BLOCK_SIZE + i]. Pass
+     *                         null when only the best category is needed, to skip
+     *                         converting every category's scores back to ints. The
+     *                         bit-sliced scores are computed either way, as the best
+     *                         category depends on all of them.
+     * @param bestCategories   Output for the ordinal of the highest scoring category
+     *                         of each roll, at index i.
+     * @param bestScores       Output for the highest score of each roll, at index i.
+     */
+    public void evaluateBlock(int[] results, int offset, int count, int[] categoryScores,
+        int[] bestCategories, int[] bestScores)
+    {
+        if (count < 0 || count > BLOCK_SIZE)
+        {
+            throw new IllegalArgumentException("A block holds between 0 and " + BLOCK_SIZE + " rolls.");
+        }
+
+        transpose(results, offset, count);
+        countFaces();
+        sumDice();
+        scoreCategories();
+        pickBest();
+
+        if (categoryScores != null)
+        {
+            for (int c = 0; c < CATEGORIES.length; c++)
+            {
+                extract(scores[c], count, categoryScores, c * BLOCK_SIZE);
+            }
+        }
+
+        extract(best, count, bestScores, 0);
+        extract(bestCategory, count, bestCategories, 0);
+    }
+
+    /**
+     * Evaluates any number of rolls, block by block.
+     *
+     * @param results        The value of each die, roll after roll.
+     * @param rolls          The number of rolls to evaluate.
+     * @param bestCategories Output for the ordinal of the highest scoring category of
+     *                       each roll.
+     * @param bestScores     Output for the highest score of each roll.
+     */
+    public void evaluateAll(int[] results, int rolls, int[] bestCategories, int[] bestScores)
+    {
+        int[] blockCategories = new int[BLOCK_SIZE];
+        int[] blockScores = new int[BLOCK_SIZE];
+
+        for (int first = 0; first < rolls; first += BLOCK_SIZE)
+        {
+            int count = Math.min(BLOCK_SIZE, rolls - first);
+            evaluateBlock(results, first * dice, count, null, blockCategories, blockScores);
+
+            System.arraycopy(blockCategories, 0, bestCategories, first, count);
+            System.arraycopy(blockScores, 0, bestScores, first, count);
+        }
+    }
+
+    /**
+     * Builds the bit-planes of every die from the results.
+     */
+    private void transpose(int[] results, int offset, int count)
+    {
+        for (int d = 0; d < dice; d++)
+        {
+            long[] planes = diePlanes[d];
+
+            for (int b = 0; b < faceBits; b++)
+            {
+                planes[b] = 0;
+            }
+
+            for (int i = 0; i < count; i++)
+            {
+                int value = results[offset + i * dice + d] - 1;
+
+                if (value < 0 || value >= faces)
+                {
+                    throw new IllegalArgumentException("Result " + (value + 1) + " is not a valid value. "
+                            + "Values must be between 1 and " + faces + ".");
+                }
+
+                for (int b = 0; b < faceBits; b++)
+                {
+                    planes[b] |= (long) ((value >>> b) & 1) << i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts how many dice show each face, and derives the number of distinct
+     * faces, and the number of pairs of consecutive faces that are both present.
+     */
+    private void countFaces()
+    {
+        clear(distinct);
+        clear(adjacent);
+
+        for (int face = 1; face <= faces; face++)
+        {
+            long[] count = faceCounts[face];
+            clear(count);
+
+            for (int d = 0; d < dice; d++)
+            {
+                long[] planes = diePlanes[d];
+                long equal = ~0L;
+
+                for (int b = 0; b < faceBits; b++)
+                {
+                    equal &= (((face - 1) >>> b) & 1) != 0 ? planes[b] : ~planes[b];
+                }
+
+                increment(count, equal);
+            }
+
+            facePresent[face] = or(count);
+            increment(distinct, facePresent[face]);
+
+            if (face > 1)
+            {
+                increment(adjacent, facePresent[face - 1] & facePresent[face]);
+            }
+        }
+    }
+
+    private void sumDice()
+    {
+        setConstant(sum, dice);
+
+        for (int d = 0; d < dice; d++)
+        {
+            clear(tmp);
+            System.arraycopy(diePlanes[d], 0, tmp, 0, faceBits);
+            add(sum, tmp);
+        }
+    }
+
+    /**
+     * Computes the bit-sliced score of every category, following the rules of
+     * DiceRollEvaluator.
+     */
+    private void scoreCategories()
+    {
+        long[] threeOfAKind = scores[ScoreCategory.THREE_OF_A_KIND.ordinal()];
+        long[] fourOfAKind = scores[ScoreCategory.FOUR_OF_A_KIND.ordinal()];
+
+        // Face based categories
+        long anyThree = 0;
+        long onlyOneOrFour = ~0L;
+        long onlyTwoOrThree = ~0L;
+
+        for (int face = 1; face <= faces; face++)
+        {
+            long[] count = faceCounts[face];
+            long none = equalsConstant(count, 0);
+            long three = equalsConstant(count, 3);
+
+            anyThree |= three;
+            onlyOneOrFour &= none | equalsConstant(count, 1) | equalsConstant(count, 4);
+            onlyTwoOrThree &= none | equalsConstant(count, 2) | three;
+
+            // The value of the category is also the face, e.g. TWOS = 2
+            if (face <= ScoreCategory.EIGHTS.getValue())
+            {
+                multiplyConstant(count, face, scores[face - 1]);
+            }
+        }
+
+        long twoFaces = equalsConstant(distinct, 2);
+
+        masked(sum, twoFaces & onlyOneOrFour, fourOfAKind);
+        masked(sum, equalsConstant(distinct, 3) & anyThree, threeOfAKind);
+        constantMasked(GameConstants.SCORE_FULL_HOUSE, twoFaces & onlyTwoOrThree,
+                scores[ScoreCategory.FULL_HOUSE.ordinal()]);
+
+        // Sorted distinct faces have (distinct - 1 - adjacent) gaps between them.
+        // Small straight: at least 4 distinct faces and at most 1 gap.
+        long small = 0;
+        for (int size = 4; size <= dice; size++)
+        {
+            small |= equalsConstant(distinct, size) & ~lessThanConstant(adjacent, size - 2);
+        }
+
+        long allDifferent = equalsConstant(distinct, dice);
+        long large = allDifferent & equalsConstant(adjacent, dice - 1);
+
+        constantMasked(GameConstants.SCORE_STRAIGTH_SMALL, small,
+                scores[ScoreCategory.STRAIGHT_SMALL.ordinal()]);
+        constantMasked(GameConstants.SCORE_STRAIGTH_LARGE, large,
+                scores[ScoreCategory.STRAIGHT_LARGE.ordinal()]);
+        constantMasked(GameConstants.SCORE_ALL_DIFFERENT, allDifferent,
+                scores[ScoreCategory.ALL_DIFFERENT.ordinal()]);
+        constantMasked(GameConstants.SCORE_ALL_SAME, equalsConstant(distinct, 1),
+                scores[ScoreCategory.ALL_SAME.ordinal()]);
+        System.arraycopy(sum, 0, scores[ScoreCategory.CHANCE.ordinal()], 0, valueBits);
+    }
+
+    /**
+     * Walks the categories in tie-break order, replacing the best score where
+     * a category scores strictly higher.
+     */
+    private void pickBest()
+    {
+        final ScoreCategory[] categories = GameConstants.ALL_SCORE_CATEGORIES;
+
+        // Default response, like DiceRollEvaluator
+        clear(best);
+        setConstant(bestCategory, categories[0].ordinal());
+
+        for (ScoreCategory category : categories)
+        {
+            long[] score = scores[category.ordinal()];
+            long higher = greaterThan(score, best);
+
+            setConstant(constant, category.ordinal());
+
+            for (int b = 0; b < valueBits; b++)
+            {
+                best[b] = (score[b] & higher) | (best[b] & ~higher);
+                bestCategory[b] = (constant[b] & higher) | (bestCategory[b] & ~higher);
+            }
+        }
+    }
+
+    /**
+     * Converts a bit-sliced number back to one int per roll.
+     */
+    private void extract(long[] planes, int count, int[] out, int offset)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            int value = 0;
+
+            for (int b = 0; b < valueBits; b++)
+            {
+                value |= (int) ((planes[b] >>> i) & 1) << b;
+            }
+
+            out[offset + i] = value;
+        }
+    }
+
+    private static int bitsFor(int value)
+    {
+        return 32 - Integer.numberOfLeadingZeros(value);
+    }
+
+    private static void clear(long[] planes)
+    {
+        for (int b = 0; b < planes.length; b++)
+        {
+            planes[b] = 0;
+        }
+    }
+
+    /**
+     * Mask of the rolls where the number is not zero.
+     */
+    private static long or(long[] planes)
+    {
+        long any = 0;
+
+        for (long plane : planes)
+        {
+            any |= plane;
+        }
+
+        return any;
+    }
+
+    /**
+     * Adds 1 to the number of every roll in the mask.
+     */
+    private static void increment(long[] planes, long mask)
+    {
+        long carry = mask;
+
+        for (int b = 0; b < planes.length && carry != 0; b++)
+        {
+            long next = planes[b] & carry;
+            planes[b] ^= carry;
+            carry = next;
+        }
+    }
+
+    /**
+     * Ripple-carry addition, a += b.
+     */
+    private static void add(long[] a, long[] b)
+    {
+        long carry = 0;
+
+        for (int i = 0; i < a.length; i++)
+        {
+            long partial = a[i] ^ b[i];
+            long next = (a[i] & b[i]) | (carry & partial);
+            a[i] = partial ^ carry;
+            carry = next;
+        }
+    }
+
+    private void multiplyConstant(long[] planes, int factor, long[] out)
+    {
+        clear(out);
+
+        // Shift and add for every bit of the factor
+        for (int shift = 0; (factor >>> shift) != 0; shift++)
+        {
+            if (((factor >>> shift) & 1) != 0)
+            {
+                clear(tmp);
+                for (int b = 0; b + shift < valueBits; b++)
+                {
+                    tmp[b + shift] = planes[b];
+                }
+
+                add(out, tmp);
+            }
+        }
+    }
+
+    /**
+     * Mask of the rolls whose number equals the constant.
+     */
+    private static long equalsConstant(long[] planes, int value)
+    {
+        long equal = ~0L;
+
+        for (int b = 0; b < planes.length; b++)
+        {
+            equal &= ((value >>> b) & 1) != 0 ? planes[b] : ~planes[b];
+        }
+
+        return (value >>> planes.length) == 0 ? equal : 0;
+    }
+
+    /**
+     * Mask of the rolls whose number is lower than the constant.
+     */
+    private static long lessThanConstant(long[] planes, int value)
+    {
+        if (value <= 0)
+        {
+            return 0;
+        }
+
+        if ((value >>> planes.length) != 0)
+        {
+            return ~0L;
+        }
+
+        long less = 0;
+        long equal = ~0L;
+
+        for (int b = planes.length - 1; b >= 0; b--)
+        {
+            long constantBit = ((value >>> b) & 1) != 0 ? ~0L : 0;
+            less |= equal & ~planes[b] & constantBit;
+            equal &= ~(planes[b] ^ constantBit);
+        }
+
+        return less;
+    }
+
+    /**
+     * Mask of the rolls where a is strictly greater than b.
+     */
+    private static long greaterThan(long[] a, long[] b)
+    {
+        long greater = 0;
+        long equal = ~0L;
+
+        for (int i = a.length - 1; i >= 0; i--)
+        {
+            greater |= equal & a[i] & ~b[i];
+            equal &= ~(a[i] ^ b[i]);
+        }
+
+        return greater;
+    }
+
+    private static void masked(long[] planes, long mask, long[] out)
+    {
+        for (int b = 0; b < planes.length; b++)
+        {
+            out[b] = planes[b] & mask;
+        }
+    }
+
+    private static void constantMasked(int value, long mask, long[] out)
+    {
+        for (int b = 0; b < out.length; b++)
+        {
+            out[b] = ((value >>> b) & 1) != 0 ? mask : 0;
+        }
+    }
+
+    private static void setConstant(long[] planes, int value)
+    {
+        constantMasked(value, ~0L, planes);
+    }
+}
@@ -0,0 +1,553 @@
+package com.diceonayatch.service;
+
+import com.diceonayatch.metadata.GameConstants;
+import com.diceonayatch.model.DiceRoll;
+import com.diceonayatch.model.EvaluationResult;
+import com.diceonayatch.model.ScoreCategory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Enumerates every multiset of dice faces that can appear in the game, from
+ * the empty hold up to a full roll, and assigns each of them a dense index.
+ *
+ * Since the order of the dice does not matter for scoring, a roll can be
+ * reduced to its sorted (canonical) form. For five eight-sided dice there are
+ * only 792 canonical rolls, and 1287 multisets when partial holds are included,
+ * which makes it cheap to precompute tables over the whole space.
+ *
+ * Two index spaces are exposed:
+ * - Multiset indices, covering every multiset with 0 to TOTAL_NUMBER_OF_DICE faces.
+ * - Roll indices, covering only the multisets with TOTAL_NUMBER_OF_DICE faces.
+ *
+ * Instances are immutable and shared through getInstance(), so they are safe
+ * to use from multiple threads.
+ *
+ * @author agent 10/19/26.
+ */
+public final class CanonicalRollSpace
+{
+    private static volatile CanonicalRollSpace instance;
+
+    // Read once, as values() copies the array on every call
+    private static final int CATEGORY_COUNT = ScoreCategory.values().length;
+
+    private final int numberOfDice;
+    private final int valuesPerDie;
+
+    // Base used to encode a sorted multiset into a lookup key. Digit 0 is
+    // reserved for "no die", which makes the size of the multiset implicit.
+    private final int keyBase;
+
+    // Lookup key -> multiset index, -1 for keys that are not sorted
+    private final int[] keyToMultiset;
+
+    // Dice in roll order, encoded as sum((face - 1) * valuesPerDie ^ position) -> roll index
+    private final int[] orderedToRoll;
+
+    private final int[][] multisetFaces;
+    private final int[] multisetToRoll;
+    private final int[] rollToMultiset;
+
+    // Multisets are grouped by size, multisets of size n start at sizeOffsets[n]
+    private final int[] sizeOffsets;
+
+    // Number of ordered dice sequences that collapse into each multiset
+    private final long[] multisetPermutations;
+
+    // Distinct holds (as multiset indices) that can be kept from each roll
+    private final int[][] rollHolds;
+
+    // Scores for each roll, laid out as [roll * categories + category.ordinal()]
+    private final int[] scores;
+
+    // Highest score any roll can get in each category, indexed by ordinal
+    private final int[] maxScores;
+
+    private CanonicalRollSpace(int numberOfDice, int valuesPerDie)
+    {
+        this.numberOfDice = numberOfDice;
+        this.valuesPerDie = valuesPerDie;
+        this.keyBase = valuesPerDie + 1;
+
+        int keySpace = 1;
+        for (int i = 0; i < numberOfDice; i++)
+        {
+            keySpace *= keyBase;
+        }
+
+        keyToMultiset = new int[keySpace];
+        Arrays.fill(keyToMultiset, -1);
+
+        // Enumerate by size, and in lexicographic order within each size
+        List<int[]> all = new ArrayList<int[]>();
+        sizeOffsets = new int[numberOfDice + 2];
+        for (int size = 0; size <= numberOfDice; size++)
+        {
+            sizeOffsets[size] = all.size();
+            enumerate(new int[size], 0, 1, all);
+        }
+        sizeOffsets[numberOfDice + 1] = all.size();
+
+        multisetFaces = all.toArray(new int[all.size()][]);
+        multisetToRoll = new int[multisetFaces.length];
+        multisetPermutations = new long[multisetFaces.length];
+
+        List<Integer> rolls = new ArrayList<Integer>();
+        for (int i = 0; i < multisetFaces.length; i++)
+        {
+            int[] faces = multisetFaces[i];
+            keyToMultiset[encode(faces, faces.length)] = i;
+            multisetPermutations[i] = permutations(faces);
+
+            if (faces.length == numberOfDice)
+            {
+                multisetToRoll[i] = rolls.size();
+                rolls.add(i);
+            }
+            else
+            {
+                multisetToRoll[i] = -1;
+            }
+        }
+
+        rollToMultiset = new int[rolls.size()];
+        rollHolds = new int[rolls.size()][];
+
+        for (int roll = 0; roll < rollToMultiset.length; roll++)
+        {
+            rollToMultiset[roll] = rolls.get(roll);
+            rollHolds[roll] = computeHolds(multisetFaces[rollToMultiset[roll]]);
+        }
+
+        orderedToRoll = computeOrderedLookup();
+        scores = computeScores();
+
+        ScoreCategory[] categories = ScoreCategory.values();
+        maxScores = new int[categories.length];
+        for (int i = 0; i < scores.length; i++)
+        {
+            int category = i % categories.length;
+            maxScores[category] = Math.max(maxScores[category], scores[i]);
+        }
+    }
+
+    /**
+     * Returns the shared roll space for the dice configuration described by
+     * GameConstants.
+     *
+     * @return The shared, immutable CanonicalRollSpace instance.
+     */
+    public static CanonicalRollSpace getInstance()
+    {
+        CanonicalRollSpace space = instance;
+
+        if (space == null)
+        {
+            synchronized (CanonicalRollSpace.class)
+            {
+                space = instance;
+
+                if (space == null)
+                {
+                    space = new CanonicalRollSpace(GameConstants.TOTAL_NUMBER_OF_DICE,
+                            GameConstants.VALUES_PER_DIE);
+                    instance = space;
+                }
+            }
+        }
+
+        return space;
+    }
+
+    public int getNumberOfDice()
+    {
+        return numberOfDice;
+    }
+
+    public int getValuesPerDie()
+    {
+        return valuesPerDie;
+    }
+
+    /**
+     * Returns the number of multisets with 0 to getNumberOfDice() faces.
+     */
+    public int getMultisetCount()
+    {
+        return multisetFaces.length;
+    }
+
+    /**
+     * Returns the number of canonical rolls, i.e. multisets with exactly
+     * getNumberOfDice() faces.
+     */
+    public int getRollCount()
+    {
+        return rollToMultiset.length;
+    }
+
+    /**
+     * Returns the sorted faces of the given multiset. The returned array is
+     * shared and must not be modified.
+     *
+     * @param multiset The multiset index.
+     *
+     * @return The faces of the multiset, in ascending order.
+     */
+    public int[] getFaces(int multiset)
+    {
+        return multisetFaces[multiset];
+    }
+
+    /**
+     * Returns the sorted faces of the given canonical roll. The returned array
+     * is shared and must not be modified.
+     *
+     * @param roll The roll index.
+     *
+     * @return The faces of the roll, in ascending order.
+     */
+    public int[] getRollFaces(int roll)
+    {
+        return multisetFaces[rollToMultiset[roll]];
+    }
+
+    public int getMultisetForRoll(int roll)
+    {
+        return rollToMultiset[roll];
+    }
+
+    /**
+     * Returns the roll index for a multiset index, or -1 if the multiset does
+     * not contain a face for every die.
+     */
+    public int getRollForMultiset(int multiset)
+    {
+        return multisetToRoll[multiset];
+    }
+
+    /**
+     * Returns the number of ordered dice sequences that have the given
+     * canonical roll as their sorted form. Dividing by
+     * getValuesPerDie() ^ getNumberOfDice() gives the probability of the roll.
+     *
+     * @param roll The roll index.
+     *
+     * @return The number of permutations of the roll.
+     */
+    public long getRollPermutations(int roll)
+    {
+        return multisetPermutations[rollToMultiset[roll]];
+    }
+
+    /**
+     * Returns the number of ordered dice sequences that have the given
+     * multiset as their sorted form.
+     *
+     * @param multiset The multiset index.
+     *
+     * @return The number of permutations of the multiset.
+     */
+    public long getPermutations(int multiset)
+    {
+        return multisetPermutations[multiset];
+    }
+
+    /**
+     * Returns the first multiset index with the given number of faces.
+     * Multisets are grouped by size, so the multisets of size n are the
+     * indices in [getFirstMultisetOfSize(n), getFirstMultisetOfSize(n + 1)).
+     *
+     * @param size The number of faces, between 0 and getNumberOfDice() + 1.
+     *
+     * @return The first multiset index of that size.
+     */
+    public int getFirstMultisetOfSize(int size)
+    {
+        return sizeOffsets[size];
+    }
+
+    /**
+     * Returns the multiset indices of every distinct hold that can be kept from
+     * the given roll, including the empty hold and the whole roll. The returned
+     * array is shared and must not be modified.
+     *
+     * @param roll The roll index.
+     *
+     * @return The distinct holds for the roll.
+     */
+    public int[] getHolds(int roll)
+    {
+        return rollHolds[roll];
+    }
+
+    /**
+     * Returns the precomputed score of the given canonical roll for a category.
+     *
+     * @param roll     The roll index.
+     * @param category The ScoreCategory to look up.
+     *
+     * @return The score, as computed by DiceRollEvaluator.
+     */
+    public int getScore(int roll, ScoreCategory category)
+    {
+        return scores[roll * CATEGORY_COUNT + category.ordinal()];
+    }
+
+    /**
+     * Returns the highest score any roll can achieve in the given category.
+     *
+     * @param category The ScoreCategory to look up.
+     *
+     * @return The maximum score for the category.
+     */
+    public int getMaxScore(ScoreCategory category)
+    {
+        return maxScores[category.ordinal()];
+    }
+
+    /**
+     * Finds the multiset index for the given faces, in any order.
+     *
+     * @param faces  The faces to look up. The array is not modified.
+     * @param length The number of faces to use, starting at index 0.
+     *
+     * @return The multiset index for the faces.
+     */
+    public int getMultisetIndex(int[] faces, int length)
+    {
+        if (faces == null || length < 0 || length > numberOfDice || length > faces.length)
+        {
+            throw new IllegalArgumentException("A multiset must contain between 0 and "
+                    + numberOfDice + " faces.");
+        }
+
+        int[] sorted = Arrays.copyOf(faces, length);
+
+        for (int i = 0; i < length; i++)
+        {
+            if (sorted[i] < 1 || sorted[i] > valuesPerDie)
+            {
+                throw new IllegalArgumentException("Face " + sorted[i] + " is not a valid value. "
+                        + "Values must be between 1 and " + valuesPerDie + ".");
+            }
+        }
+
+        Arrays.sort(sorted);
+        return keyToMultiset[encode(sorted, length)];
+    }
+
+    /**
+     * Finds the roll index for the given DiceRoll.
+     *
+     * @param diceRoll The DiceRoll to look up.
+     *
+     * @return The roll index of the canonical form of the DiceRoll.
+     */
+    public int getRollIndex(DiceRoll diceRoll)
+    {
+        if (diceRoll == null || diceRoll.getTotalRolls() != numberOfDice)
+        {
+            throw new IllegalArgumentException("DiceRoll must contain exactly " + numberOfDice
+                    + " results.");
+        }
+
+        return getRollIndex(diceRoll.getResults());
+    }
+
+    /**
+     * Finds the roll index for dice results in any order. Unlike
+     * getMultisetIndex, this does not allocate or sort, which makes it
+     * suitable for hot loops.
+     *
+     * @param results The value of each die. Only the first getNumberOfDice()
+     *                values are used.
+     *
+     * @return The roll index of the canonical form of the results.
+     */
+    public int getRollIndex(int[] results)
+    {
+        if (results == null || results.length < numberOfDice)
+        {
+            throw new IllegalArgumentException("Results must contain " + numberOfDice + " values.");
+        }
+
+        int key = 0;
+
+        for (int i = numberOfDice - 1; i >= 0; i--)
+        {
+            int face = results[i];
+
+            if (face < 1 || face > valuesPerDie)
+            {
+                throw new IllegalArgumentException("Face " + face + " is not a valid value. "
+                        + "Values must be between 1 and " + valuesPerDie + ".");
+            }
+
+            key = key * valuesPerDie + (face - 1);
+        }
+
+        return orderedToRoll[key];
+    }
+
+    /**
+     * Encodes already sorted faces into a lookup key, using one base
+     * (valuesPerDie + 1) digit per face.
+     */
+    private int encode(int[] sortedFaces, int length)
+    {
+        int key = 0;
+
+        for (int i = length - 1; i >= 0; i--)
+        {
+            key = key * keyBase + sortedFaces[i];
+        }
+
+        return key;
+    }
+
+    /**
+     * Recursively fills the given array with every non-decreasing sequence of
+     * faces, and adds a copy of each one to the output list.
+     */
+    private void enumerate(int[] current, int position, int minFace, List<int[]> out)
+    {
+        if (position == current.length)
+        {
+            out.add(current.clone());
+            return;
+        }
+
+        for (int face = minFace; face <= valuesPerDie; face++)
+        {
+            current[position] = face;
+            enumerate(current, position + 1, face, out);
+        }
+    }
+
+    /**
+     * Computes the multinomial coefficient n! / (c1! * c2! * ... ), where the
+     * c values are the multiplicities of each face in the sorted faces.
+     */
+    private long permutations(int[] sortedFaces)
+    {
+        long result = factorial(sortedFaces.length);
+        int run = 1;
+
+        for (int i = 1; i <= sortedFaces.length; i++)
+        {
+            if (i < sortedFaces.length && sortedFaces[i] == sortedFaces[i - 1])
+            {
+                run++;
+            }
+            else
+            {
+                result /= factorial(run);
+                run = 1;
+            }
+        }
+
+        return result;
+    }
+
+    private static long factorial(int n)
+    {
+        long result = 1;
+
+        for (int i = 2; i <= n; i++)
+        {
+            result *= i;
+        }
+
+        return result;
+    }
+
+    private int[] computeHolds(int[] sortedFaces)
+    {
+        int subsets = 1 << sortedFaces.length;
+        int[] held = new int[sortedFaces.length];
+        int[] holds = new int[subsets];
+        int count = 0;
+
+        for (int mask = 0; mask < subsets; mask++)
+        {
+            int length = 0;
+
+            for (int i = 0; i < sortedFaces.length; i++)
+            {
+                if ((mask & (1 << i)) != 0)
+                {
+                    held[length++] = sortedFaces[i];
+                }
+            }
+
+            // Faces are taken in ascending order, so the hold is already sorted
+            holds[count++] = keyToMultiset[encode(held, length)];
+        }
+
+        Arrays.sort(holds);
+
+        // Different masks can keep the same faces when the roll has repeats
+        int distinct = 0;
+        for (int i = 0; i < count; i++)
+        {
+            if (i == 0 || holds[i] != holds[i - 1])
+            {
+                holds[distinct++] = holds[i];
+            }
+        }
+
+        return Arrays.copyOf(holds, distinct);
+    }
+
+    private int[] computeOrderedLookup()
+    {
+        int tuples = 1;
+        for (int i = 0; i < numberOfDice; i++)
+        {
+            tuples *= valuesPerDie;
+        }
+
+        int[] lookup = new int[tuples];
+        int[] faces = new int[numberOfDice];
+
+        for (int tuple = 0; tuple < tuples; tuple++)
+        {
+            int rest = tuple;
+
+            for (int i = 0; i < numberOfDice; i++)
+            {
+                faces[i] = rest % valuesPerDie + 1;
+                rest /= valuesPerDie;
+            }
+
+            Arrays.sort(faces);
+            lookup[tuple] = multisetToRoll[keyToMultiset[encode(faces, numberOfDice)]];
+        }
+
+        return lookup;
+    }
+
+    private int[] computeScores()
+    {
+        DiceRollEvaluator evaluator = new DiceRollEvaluator();
+        ScoreCategory[] categories = ScoreCategory.values();
+        int[] table = new int[rollToMultiset.length * categories.length];
+
+        for (int roll = 0; roll < rollToMultiset.length; roll++)
+        {
+            DiceRoll diceRoll = new DiceRoll(multisetFaces[rollToMultiset[roll]].clone());
+
+            for (ScoreCategory category : categories)
+            {
+                EvaluationResult result = evaluator.getScoreForCategory(diceRoll, category);
+                table[roll * categories.length + category.ordinal()] = result.score;
+            }
+        }
+
+        return table;
+    }
+}
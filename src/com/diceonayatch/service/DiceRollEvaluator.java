@@ -3,6 +3,7 @@ package com.diceonayatch.service;
 import com.diceonayatch.metadata.GameConstants;
 import com.diceonayatch.model.DiceRoll;
 import com.diceonayatch.model.EvaluationResult;
+import com.diceonayatch.model.ImmutableDiceRoll;
 import com.diceonayatch.model.ScoreCategory;
 
 import java.util.*;
@@ -46,8 +47,12 @@ import java.util.*;
  *
  * @author Erik Ynigo 9/4/18.
  */
-public class DiceRollEvaluator
+public class DiceRollEvaluator implements RollScorer
 {
+    // Key for the scores this evaluator caches in ImmutableDiceRoll objects,
+    // so no other code can read or replace them
+    private final Object cacheKey = new Object();
+
     public DiceRollEvaluator()
     {
 
@@ -75,6 +80,24 @@ public class DiceRollEvaluator
         return  result;
     }
 
+    /**
+     * Given a DiceRoll and a ScoreCategory object, it calculates the score
+     * achieved by the rolls in the given category. Same as
+     * getScoreForCategory, without allocating an EvaluationResult.
+     *
+     * @param diceRoll The DiceRoll object representing the results for a series
+     *                 of rolls.
+     * @param category The ScoreCategory we want to evaluate the rolls against.
+     *
+     * @return The total score achieved by the rolls, according to the rules of
+     *         the game.
+     */
+    @Override
+    public int score(DiceRoll diceRoll, ScoreCategory category)
+    {
+        return evaluate(diceRoll, category);
+    }
+
     /**
      * Given a DiceRoll object, it returns the ScoreCategory where the rolls
      * scored the highest on.
@@ -90,35 +113,194 @@ public class DiceRollEvaluator
      */
     public EvaluationResult getHighestScoringCategory(DiceRoll diceRoll)
     {
+        return getHighestScoringCategory(diceRoll, GameConstants.ALL_CATEGORIES_OPEN);
+    }
+
+    /**
+     * Given a DiceRoll object and a scorecard mask, it returns the open
+     * ScoreCategory where the rolls scored the highest on.
+     *
+     * Open categories are evaluated from the highest to the lowest score any
+     * roll can achieve in them. Once no remaining category can achieve more
+     * than the best score found so far, the search stops, as none of them
+     * could be returned. A category that can at most tie the best score is
+     * also skipped, unless it comes first in the tie-break order. The number
+     * of skipped evaluations is reported in EvaluationResult.prunedEvaluations.
+     * The maximums only hold for TOTAL_NUMBER_OF_DICE dice between 1 and
+     * VALUES_PER_DIE, so any other roll is evaluated on every open category.
+     *
+     * The scores of an ImmutableDiceRoll are cached in the roll, so evaluating
+     * it again looks them up instead. The same categories are skipped either
+     * way.
+     *
+     * @param diceRoll       The DiceRoll object representing the results for a
+     *                       series of rolls.
+     * @param openCategories The scorecard mask of categories to choose from, where
+     *                       bit n is set if the ScoreCategory with ordinal n is open.
+     *                       See GameConstants.ALL_CATEGORIES_OPEN.
+     *
+     * @return The EvaluationResult object containing the open ScoreCategory where
+     *         the rolls scored the highest on, as well as the score achieved. Ties
+     *         are resolved like in getHighestScoringCategory(DiceRoll), and if no
+     *         open category scores, the first open one is returned.
+     */
+    public EvaluationResult getHighestScoringCategory(DiceRoll diceRoll, int openCategories)
+    {
+        if (diceRoll == null)
+        {
+            throw new IllegalArgumentException("DiceRoll cannot be null.");
+        }
+
+        if ((openCategories & GameConstants.ALL_CATEGORIES_OPEN) == 0)
+        {
+            throw new IllegalArgumentException("At least one category must be open.");
+        }
+
         EvaluationResult result = new EvaluationResult();
 
-        // Local reference for more efficient lookup
-        final ScoreCategory[] categories = GameConstants.ALL_SCORE_CATEGORIES;
+        // The max scores only hold for rolls of the game, any other roll is
+        // evaluated on every open category in tie-break order
+        final boolean prune = isGameRoll(diceRoll);
+
+        // Local references for more efficient lookup
+        final ScoreCategory[] categories = prune ? SearchOrder.CATEGORIES : GameConstants.ALL_SCORE_CATEGORIES;
+        final int[] maxScores = SearchOrder.MAX_SCORES;
+        final int[] ranks = SearchOrder.RANKS;
+
+        // Immutable rolls keep the scores of the categories evaluated so far
+        ImmutableDiceRoll cached = diceRoll instanceof ImmutableDiceRoll ? (ImmutableDiceRoll) diceRoll : null;
+
+        // The frequency table is shared by every category, and only built
+        // once a score is not cached
+        HashMap<Integer, Integer> table = null;
 
-        // Default response
+        // Default response, the first open category in tie-break order
+        ScoreCategory maxCategory = getFirstOpenCategory(openCategories);
+        int maxRank = ranks[maxCategory.ordinal()];
         int maxScore = 0;
-        ScoreCategory maxCategory = categories[0];
+        int pruned = 0;
 
-        // Evaluate all available categories
         for (int i = 0; i < categories.length; i++)
         {
             ScoreCategory category = categories[i];
-            int score = evaluate(diceRoll, category);
 
-            // If new score is higher than previous max score, update
-            if (score > maxScore)
+            if ((openCategories & (1 << category.ordinal())) == 0)
+            {
+                continue;
+            }
+
+            // Categories are sorted by max score, so none of the remaining
+            // ones can reach the current max score either
+            if (prune && maxScores[i] < maxScore)
+            {
+                pruned += Integer.bitCount(openCategories & SearchOrder.REMAINING_MASKS[i]);
+                break;
+            }
+
+            // At best a tie, which only wins if the category comes first
+            int rank = ranks[category.ordinal()];
+            if (prune && maxScores[i] == maxScore && rank > maxRank)
+            {
+                pruned++;
+                continue;
+            }
+
+            int score = cached == null ? -1 : cached.getCachedScore(cacheKey, category);
+
+            if (score < 0)
+            {
+                if (table == null)
+                {
+                    table = buildFrequencyTable(diceRoll);
+                }
+
+                score = evaluate(table, category);
+
+                if (cached != null)
+                {
+                    cached.cacheScore(cacheKey, category, score);
+                }
+            }
+
+            // If new score is higher than previous max score, or the same
+            // score on a category that comes first, update
+            if (score > maxScore || (score == maxScore && rank < maxRank))
             {
                 maxScore = score;
                 maxCategory = category;
+                maxRank = rank;
             }
         }
 
         result.score = maxScore;
         result.category = maxCategory;
+        result.prunedEvaluations = pruned;
 
         return result;
     }
 
+    /**
+     * Returns whether the roll has TOTAL_NUMBER_OF_DICE results, all between 1
+     * and VALUES_PER_DIE, which are the only rolls the max scores used by the
+     * pruned search hold for.
+     */
+    private static boolean isGameRoll(DiceRoll diceRoll)
+    {
+        if (diceRoll.getTotalRolls() != GameConstants.TOTAL_NUMBER_OF_DICE)
+        {
+            return false;
+        }
+
+        // Values are checked when an immutable roll is created
+        if (diceRoll instanceof ImmutableDiceRoll)
+        {
+            return true;
+        }
+
+        for (int result : diceRoll.getResults())
+        {
+            if (result < 1 || result > GameConstants.VALUES_PER_DIE)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the first open category in the order of
+     * GameConstants.ALL_SCORE_CATEGORIES.
+     */
+    private ScoreCategory getFirstOpenCategory(int openCategories)
+    {
+        for (ScoreCategory category : GameConstants.ALL_SCORE_CATEGORIES)
+        {
+            if ((openCategories & (1 << category.ordinal())) != 0)
+            {
+                return category;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the score cached in the roll, scoring and caching the category
+     * first if needed.
+     */
+    private int evaluateCached(ImmutableDiceRoll diceRoll, ScoreCategory category)
+    {
+        int score = diceRoll.getCachedScore(cacheKey, category);
+
+        if (score < 0)
+        {
+            score = evaluate(buildFrequencyTable(diceRoll), category);
+            diceRoll.cacheScore(cacheKey, category, score);
+        }
+
+        return score;
+    }
 
     /**
      * Internal function to evaluate a given DiceRoll agains a ScoreCategory.
@@ -137,11 +319,39 @@ public class DiceRollEvaluator
             throw new IllegalArgumentException("DiceRoll cannot be null.");
         }
 
-        // Generate number frequency table where:
-        // key = the result of the roll
-        // value = number of times this result has appeared
+        if (diceRoll instanceof ImmutableDiceRoll)
+        {
+            return evaluateCached((ImmutableDiceRoll) diceRoll, category);
+        }
+
+        return evaluate(buildFrequencyTable(diceRoll), category);
+    }
+
+    /**
+     * Generates the result frequency table for a DiceRoll, where:
+     * key = the result of the roll
+     * value = number of times this result has appeared
+     */
+    private HashMap<Integer, Integer> buildFrequencyTable(DiceRoll diceRoll)
+    {
         HashMap<Integer, Integer> table = new HashMap<Integer, Integer>();
 
+        // Immutable rolls already know their frequencies
+        if (diceRoll instanceof ImmutableDiceRoll)
+        {
+            ImmutableDiceRoll roll = (ImmutableDiceRoll) diceRoll;
+            int mask = roll.getDistinctMask();
+
+            while (mask != 0)
+            {
+                int result = Integer.numberOfTrailingZeros(mask);
+                table.put(result, roll.getFrequency(result));
+                mask &= mask - 1;
+            }
+
+            return table;
+        }
+
         for (int i = 0; i < diceRoll.getTotalRolls(); i++)
         {
             int result = diceRoll.getResultForRoll(i);
@@ -157,6 +367,11 @@ public class DiceRollEvaluator
             }
         }
 
+        return table;
+    }
+
+    private int evaluate(HashMap<Integer, Integer> table, ScoreCategory category)
+    {
         // Map to proper evaluating function
         switch (category)
         {
@@ -413,4 +628,59 @@ public class DiceRollEvaluator
 
         return sum;
     }
+
+    /**
+     * The categories sorted by the highest score any roll can achieve in them,
+     * from highest to lowest, as used by the pruned search. Loaded on first use,
+     * as the maximums come from CanonicalRollSpace, which is built with
+     * getScoreForCategory.
+     */
+    private static final class SearchOrder
+    {
+        static final ScoreCategory[] CATEGORIES;
+
+        // Max score of CATEGORIES[i]
+        static final int[] MAX_SCORES;
+
+        // Scorecard mask of CATEGORIES[i] and every category after it
+        static final int[] REMAINING_MASKS;
+
+        // Position of each category in GameConstants.ALL_SCORE_CATEGORIES, by
+        // ordinal. Lower ranks win ties.
+        static final int[] RANKS;
+
+        static
+        {
+            final CanonicalRollSpace space = CanonicalRollSpace.getInstance();
+            final ScoreCategory[] order = GameConstants.ALL_SCORE_CATEGORIES;
+
+            RANKS = new int[ScoreCategory.values().length];
+            for (int i = 0; i < order.length; i++)
+            {
+                RANKS[order[i].ordinal()] = i;
+            }
+
+            // Stable sort, so categories with the same max keep their tie-break order
+            CATEGORIES = order.clone();
+            Arrays.sort(CATEGORIES, new Comparator<ScoreCategory>()
+            {
+                @Override
+                public int compare(ScoreCategory a, ScoreCategory b)
+                {
+                    return Integer.compare(space.getMaxScore(b), space.getMaxScore(a));
+                }
+            });
+
+            MAX_SCORES = new int[CATEGORIES.length];
+            REMAINING_MASKS = new int[CATEGORIES.length];
+            int remaining = 0;
+
+            for (int i = CATEGORIES.length - 1; i >= 0; i--)
+            {
+                MAX_SCORES[i] = space.getMaxScore(CATEGORIES[i]);
+                remaining |= 1 << CATEGORIES[i].ordinal();
+                REMAINING_MASKS[i] = remaining;
+            }
+        }
+    }
 }
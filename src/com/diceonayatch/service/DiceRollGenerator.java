@@ -20,6 +20,23 @@ public class DiceRollGenerator
         random = new Random();
     }
 
+    /**
+     * Creates a generator that draws its values from the given Random. This
+     * allows each thread to use its own (optionally seeded) Random instead of
+     * sharing one.
+     *
+     * @param random The source of random values.
+     */
+    public DiceRollGenerator(Random random)
+    {
+        if (random == null)
+        {
+            throw new IllegalArgumentException("Random cannot be null.");
+        }
+
+        this.random = random;
+    }
+
     /**
      * Simulates the amount of rolls as indicated by the metadata,
      * stores the results in a DiceRoll object.
@@ -39,6 +56,28 @@ public class DiceRollGenerator
         return diceRoll;
     }
 
+    /**
+     * Simulates the amount of rolls as indicated by the metadata, and
+     * stores the results in the given array instead of allocating a new
+     * DiceRoll. Useful for hot loops that reuse the same DiceRoll object.
+     *
+     * @param results The array the results are written to. Must be able to
+     *                hold at least one result per die.
+     */
+    public void roll(int[] results)
+    {
+        if (results == null || results.length < GameConstants.TOTAL_NUMBER_OF_DICE)
+        {
+            throw new IllegalArgumentException("Results array must be able to hold "
+                    + GameConstants.TOTAL_NUMBER_OF_DICE + " results.");
+        }
+
+        for (int i = 0; i < GameConstants.TOTAL_NUMBER_OF_DICE; i++)
+        {
+            results[i] = getRandomValue(1, GameConstants.VALUES_PER_DIE);
+        }
+    }
+
     /**
      * Generates a random int between the given range, both ends inclusive.
      *
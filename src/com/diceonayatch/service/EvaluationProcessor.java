@@ -0,0 +1,538 @@
+package com.diceonayatch.service;
+
+import com.diceonayatch.model.DiceRoll;
+import com.diceonayatch.model.EvaluationResult;
+import com.diceonayatch.model.ScoreCategory;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reactive Flow processor that consumes a stream of DiceRoll objects and emits
+ * one EvaluationResult per roll, without blocking the publishing thread.
+ *
+ * Rolls are collected into batches that are evaluated on the given Executor.
+ * When the workers are idle a batch is submitted right away, even if it is
+ * not full, so latency stays low under light load while heavy load is
+ * evaluated in full batches.
+ *
+ * Backpressure is demand based: at most batchSize * maxInFlightBatches rolls
+ * are requested from upstream and not delivered yet, and more are only
+ * requested as results are delivered downstream. This bounds both the memory used and the number of
+ * tasks handed to the Executor, no matter how fast upstream publishes or how
+ * slowly downstream consumes.
+ *
+ * In ORDERED mode results are emitted in the same order as the rolls arrived.
+ * UNORDERED mode emits each batch as soon as it is evaluated, so a slow batch
+ * does not hold back the ones after it.
+ *
+ * Only a single downstream subscriber is supported.
+ *
+ * @author agent 10/19/26.
+ */
+public class EvaluationProcessor implements Flow.Processor<DiceRoll, EvaluationResult>
+{
+    public enum Ordering
+    {
+        ORDERED,
+        UNORDERED
+    }
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final int DEFAULT_MAX_IN_FLIGHT_BATCHES = 4;
+
+    private final Executor executor;
+    private final Ordering ordering;
+    private final int batchSize;
+    private final int maxInFlightBatches;
+    private final ScoreCategory category;
+    private final DiceRollEvaluator evaluator;
+
+    // Guards pending, inFlightBatches and nextBatchSequence
+    private final Object lock = new Object();
+    private final ArrayDeque<DiceRoll> pending = new ArrayDeque<DiceRoll>();
+    private int inFlightBatches;
+    private long nextBatchSequence;
+
+    // Evaluated batches waiting to be emitted. Ordered mode looks them up by
+    // sequence number, unordered mode takes them as they come.
+    private final ConcurrentHashMap<Long, EvaluationResult[]> orderedResults =
+            new ConcurrentHashMap<Long, EvaluationResult[]>();
+    private final ConcurrentLinkedQueue<EvaluationResult[]> unorderedResults =
+            new ConcurrentLinkedQueue<EvaluationResult[]>();
+
+    // Only accessed from the drain loop
+    private EvaluationResult[] currentBatch;
+    private int currentIndex;
+    private long nextEmitSequence;
+
+    // Item counters, used for the completion check and for monitoring
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong evaluated = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger drainWork = new AtomicInteger();
+
+    private final AtomicReference<Flow.Subscription> upstream = new AtomicReference<Flow.Subscription>();
+    private volatile Flow.Subscriber<? super EvaluationResult> downstream;
+    private volatile boolean upstreamDone;
+    private volatile boolean cancelled;
+    private volatile Throwable error;
+
+    public EvaluationProcessor(Executor executor, Ordering ordering)
+    {
+        this(executor, ordering, DEFAULT_BATCH_SIZE, DEFAULT_MAX_IN_FLIGHT_BATCHES, null);
+    }
+
+    /**
+     * Creates a processor.
+     *
+     * @param executor           The Executor evaluation batches run on.
+     * @param ordering           Whether results must keep the order of the rolls.
+     * @param batchSize          The maximum number of rolls evaluated per task.
+     * @param maxInFlightBatches The maximum number of batches being evaluated at once.
+     * @param category           The ScoreCategory to evaluate rolls against, or null to
+     *                           emit the highest scoring category of each roll.
+     */
+    public EvaluationProcessor(Executor executor, Ordering ordering, int batchSize,
+        int maxInFlightBatches, ScoreCategory category)
+    {
+        if (executor == null || ordering == null)
+        {
+            throw new IllegalArgumentException("Executor and Ordering cannot be null.");
+        }
+
+        if (batchSize < 1 || maxInFlightBatches < 1)
+        {
+            throw new IllegalArgumentException("Batch size and max in-flight batches must be positive.");
+        }
+
+        this.executor = executor;
+        this.ordering = ordering;
+        this.batchSize = batchSize;
+        this.maxInFlightBatches = maxInFlightBatches;
+        this.category = category;
+        this.evaluator = new DiceRollEvaluator();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super EvaluationResult> subscriber)
+    {
+        if (subscriber == null)
+        {
+            throw new NullPointerException("Subscriber cannot be null.");
+        }
+
+        synchronized (lock)
+        {
+            if (downstream != null)
+            {
+                subscriber.onSubscribe(new Flow.Subscription()
+                {
+                    @Override
+                    public void request(long n)
+                    {
+                    }
+
+                    @Override
+                    public void cancel()
+                    {
+                    }
+                });
+                subscriber.onError(new IllegalStateException("EvaluationProcessor only supports "
+                        + "a single subscriber."));
+                return;
+            }
+
+            downstream = subscriber;
+        }
+
+        subscriber.onSubscribe(new DownstreamSubscription());
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription)
+    {
+        if (subscription == null)
+        {
+            throw new NullPointerException("Subscription cannot be null.");
+        }
+
+        // Only the first subscription is kept, even if two publishers call
+        // onSubscribe at the same time
+        if (!upstream.compareAndSet(null, subscription))
+        {
+            subscription.cancel();
+            return;
+        }
+
+        subscription.request((long) batchSize * maxInFlightBatches);
+    }
+
+    @Override
+    public void onNext(DiceRoll diceRoll)
+    {
+        if (cancelled || upstreamDone)
+        {
+            return;
+        }
+
+        synchronized (lock)
+        {
+            pending.add(diceRoll);
+        }
+
+        received.incrementAndGet();
+        submitBatches();
+    }
+
+    @Override
+    public void onError(Throwable throwable)
+    {
+        fail(throwable);
+    }
+
+    @Override
+    public void onComplete()
+    {
+        upstreamDone = true;
+        submitBatches();
+        drain();
+    }
+
+    /**
+     * Returns the number of rolls waiting to be put in a batch.
+     */
+    public long getPendingCount()
+    {
+        return received.get() - submitted.get();
+    }
+
+    /**
+     * Returns the number of batches currently being evaluated, or waiting for
+     * a worker thread.
+     */
+    public int getInFlightBatchCount()
+    {
+        synchronized (lock)
+        {
+            return inFlightBatches;
+        }
+    }
+
+    /**
+     * Returns the number of rolls in batches that are currently being evaluated,
+     * or waiting for a worker thread.
+     */
+    public long getInFlightCount()
+    {
+        return submitted.get() - evaluated.get();
+    }
+
+    /**
+     * Returns the number of results that have been evaluated but not emitted yet,
+     * either because downstream has no demand or, in ORDERED mode, because an
+     * earlier batch is still being evaluated.
+     */
+    public long getReadyCount()
+    {
+        return evaluated.get() - delivered.get();
+    }
+
+    /**
+     * Returns the number of results requested by downstream that have not been
+     * emitted yet.
+     */
+    public long getOutstandingDemand()
+    {
+        return requested.get();
+    }
+
+    public long getDeliveredCount()
+    {
+        return delivered.get();
+    }
+
+    /**
+     * Hands pending rolls to the Executor, as long as there are free batch slots
+     * and either a full batch is available, the workers are idle, or upstream
+     * has completed.
+     */
+    private void submitBatches()
+    {
+        while (true)
+        {
+            final DiceRoll[] batch;
+            final long sequence;
+
+            synchronized (lock)
+            {
+                int size = Math.min(batchSize, pending.size());
+                boolean ready = size == batchSize || inFlightBatches == 0 || upstreamDone;
+
+                if (size == 0 || !ready || inFlightBatches >= maxInFlightBatches || cancelled)
+                {
+                    return;
+                }
+
+                batch = new DiceRoll[size];
+                for (int i = 0; i < size; i++)
+                {
+                    batch[i] = pending.poll();
+                }
+
+                sequence = nextBatchSequence++;
+                inFlightBatches++;
+            }
+
+            submitted.addAndGet(batch.length);
+
+            try
+            {
+                executor.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        evaluateBatch(batch, sequence);
+                    }
+                });
+            }
+            catch (RuntimeException e)
+            {
+                fail(e);
+                return;
+            }
+        }
+    }
+
+    private void evaluateBatch(DiceRoll[] batch, long sequence)
+    {
+        EvaluationResult[] results = new EvaluationResult[batch.length];
+
+        try
+        {
+            for (int i = 0; i < batch.length; i++)
+            {
+                results[i] = category == null
+                        ? evaluator.getHighestScoringCategory(batch[i])
+                        : evaluator.getScoreForCategory(batch[i], category);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            fail(e);
+            return;
+        }
+
+        // The counters are updated before the results can be emitted, so they
+        // have all drained by the time the stream completes
+        synchronized (lock)
+        {
+            inFlightBatches--;
+        }
+
+        evaluated.addAndGet(results.length);
+
+        if (ordering == Ordering.ORDERED)
+        {
+            orderedResults.put(sequence, results);
+        }
+        else
+        {
+            unorderedResults.add(results);
+        }
+
+        submitBatches();
+        drain();
+    }
+
+    private void fail(Throwable throwable)
+    {
+        if (error == null)
+        {
+            error = throwable;
+        }
+
+        Flow.Subscription subscription = upstream.get();
+        if (subscription != null)
+        {
+            subscription.cancel();
+        }
+
+        drain();
+    }
+
+    /**
+     * Emits as many results as downstream has requested. Can be called from any
+     * thread, but only one thread runs the loop at a time, so downstream signals
+     * are never concurrent.
+     */
+    private void drain()
+    {
+        if (drainWork.getAndIncrement() != 0)
+        {
+            return;
+        }
+
+        int missed = 1;
+
+        do
+        {
+            Flow.Subscriber<? super EvaluationResult> subscriber = downstream;
+
+            if (subscriber != null && !cancelled)
+            {
+                if (error != null)
+                {
+                    cancelled = true;
+                    subscriber.onError(error);
+                }
+                else
+                {
+                    emit(subscriber);
+                }
+            }
+
+            // Release buffered results once the stream has terminated
+            if (cancelled)
+            {
+                clear();
+            }
+
+            missed = drainWork.addAndGet(-missed);
+        }
+        while (missed != 0);
+    }
+
+    private void emit(Flow.Subscriber<? super EvaluationResult> subscriber)
+    {
+        long demand = requested.get();
+        long emitted = 0;
+
+        while (emitted != demand && !cancelled)
+        {
+            EvaluationResult result = nextResult();
+
+            if (result == null)
+            {
+                break;
+            }
+
+            subscriber.onNext(result);
+            emitted++;
+        }
+
+        if (emitted > 0)
+        {
+            if (demand != Long.MAX_VALUE)
+            {
+                requested.addAndGet(-emitted);
+            }
+
+            delivered.addAndGet(emitted);
+
+            // Replenish upstream with the room freed by the delivered results
+            Flow.Subscription subscription = upstream.get();
+            if (subscription != null && !upstreamDone)
+            {
+                subscription.request(emitted);
+            }
+        }
+
+        if (upstreamDone && !cancelled && delivered.get() == received.get())
+        {
+            cancelled = true;
+            subscriber.onComplete();
+        }
+    }
+
+    private EvaluationResult nextResult()
+    {
+        while (currentBatch == null || currentIndex == currentBatch.length)
+        {
+            if (ordering == Ordering.ORDERED)
+            {
+                currentBatch = orderedResults.remove(nextEmitSequence);
+
+                if (currentBatch != null)
+                {
+                    nextEmitSequence++;
+                }
+            }
+            else
+            {
+                currentBatch = unorderedResults.poll();
+            }
+
+            currentIndex = 0;
+
+            if (currentBatch == null)
+            {
+                return null;
+            }
+        }
+
+        return currentBatch[currentIndex++];
+    }
+
+    private void clear()
+    {
+        synchronized (lock)
+        {
+            pending.clear();
+        }
+
+        orderedResults.clear();
+        unorderedResults.clear();
+        currentBatch = null;
+    }
+
+    private class DownstreamSubscription implements Flow.Subscription
+    {
+        @Override
+        public void request(long n)
+        {
+            if (n <= 0)
+            {
+                fail(new IllegalArgumentException("Requested amount must be positive, was " + n + "."));
+                return;
+            }
+
+            long current;
+            long next;
+
+            do
+            {
+                current = requested.get();
+                next = current + n < 0 ? Long.MAX_VALUE : current + n;
+            }
+            while (!requested.compareAndSet(current, next));
+
+            drain();
+        }
+
+        @Override
+        public void cancel()
+        {
+            cancelled = true;
+
+            Flow.Subscription subscription = upstream.get();
+            if (subscription != null)
+            {
+                subscription.cancel();
+            }
+
+            drain();
+        }
+    }
+}
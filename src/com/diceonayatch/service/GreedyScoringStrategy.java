@@ -0,0 +1,39 @@
+package com.diceonayatch.service;
+
+import com.diceonayatch.model.DiceRoll;
+import com.diceonayatch.model.ScoreCategory;
+
+import java.util.Random;
+
+/**
+ * Scores every roll on the open category where it scores the highest, using
+ * the same tie-break order as DiceRollEvaluator.getHighestScoringCategory.
+ *
+ * @author agent 10/19/26.
+ */
+public class GreedyScoringStrategy implements ScoringStrategy
+{
+    private final DiceRollEvaluator evaluator;
+
+    public GreedyScoringStrategy()
+    {
+        this(new DiceRollEvaluator());
+    }
+
+    public GreedyScoringStrategy(DiceRollEvaluator evaluator)
+    {
+        this.evaluator = evaluator;
+    }
+
+    @Override
+    public String getName()
+    {
+        return "Greedy";
+    }
+
+    @Override
+    public ScoreCategory chooseCategory(DiceRoll diceRoll, int openCategories, Random random)
+    {
+        return evaluator.getHighestScoringCategory(diceRoll, openCategories).category;
+    }
+}
@@ -0,0 +1,464 @@
+package com.diceonayatch.service;
+
+import com.diceonayatch.metadata.GameConstants;
+import com.diceonayatch.model.LeaderboardEntry;
+import com.diceonayatch.model.ScoreCategory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * High score leaderboard fed with the final results of finished games.
+ *
+ * Keeps, for every player, the best total score, the number of games played
+ * and how many times each ScoreCategory was scored on (e.g. the number of
+ * ALL_SAME hits), plus the record holder for each category.
+ *
+ * Submissions can come from any number of threads, and no global lock is
+ * taken on the read or write paths:
+ * - Players are kept in a ConcurrentHashMap, and their stats are atomics.
+ *   Adding a player, or moving it to another bucket, only locks a single bin
+ *   of the map or set involved.
+ * - Players are bucketed by best score. Each bucket has its own concurrent set
+ *   and LongAdder (a striped counter), so writers improving different scores
+ *   never contend, and writers on the same score only contend on a stripe.
+ * - Rank queries add up the counters of the buckets above a score, and top-N
+ *   queries walk the buckets from the highest score down.
+ *
+ * Queries never block writers, and are weakly consistent: a submission that
+ * happens during a query may or may not be reflected in its result.
+ *
+ * @author agent 10/19/26.
+ */
+public class Leaderboard
+{
+    private static final int SNAPSHOT_MAGIC = 0x44594C42;
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final int maxScore;
+    private final ConcurrentHashMap<String, PlayerStats> players;
+
+    // Players indexed by best score. A player whose best score is improved
+    // concurrently by two threads may be left behind in a lower bucket, so
+    // readers skip, and clean up, entries that do not match the player's best.
+    private final Set<PlayerStats>[] buckets;
+    private final LongAdder[] bucketCounts;
+
+    // Holder of the record for each category, indexed by ordinal
+    private final AtomicReferenceArray<LeaderboardEntry> categoryRecords;
+
+    public Leaderboard()
+    {
+        this(getMaxTotalScore());
+    }
+
+    /**
+     * Creates a leaderboard for total scores between 0 and maxScore.
+     *
+     * @param maxScore The highest total score that can be submitted.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Leaderboard(int maxScore)
+    {
+        if (maxScore < 0)
+        {
+            throw new IllegalArgumentException("Max score must not be negative.");
+        }
+
+        this.maxScore = maxScore;
+        this.players = new ConcurrentHashMap<String, PlayerStats>();
+        this.buckets = new Set[maxScore + 1];
+        this.bucketCounts = new LongAdder[maxScore + 1];
+        this.categoryRecords = new AtomicReferenceArray<LeaderboardEntry>(ScoreCategory.values().length);
+
+        for (int score = 0; score <= maxScore; score++)
+        {
+            buckets[score] = ConcurrentHashMap.newKeySet();
+            bucketCounts[score] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records the result of a finished game.
+     *
+     * @param playerId       The player who played the game.
+     * @param totalScore     The final score of the game.
+     * @param categoryScores The score obtained on each category, indexed by
+     *                       ScoreCategory ordinal. Categories with a score
+     *                       greater than zero count as hits.
+     */
+    public void submit(String playerId, int totalScore, int[] categoryScores)
+    {
+        if (playerId == null)
+        {
+            throw new IllegalArgumentException("Player id cannot be null.");
+        }
+
+        if (totalScore < 0 || totalScore > maxScore)
+        {
+            throw new IllegalArgumentException("Total score must be between 0 and " + maxScore + ".");
+        }
+
+        if (categoryScores == null || categoryScores.length != ScoreCategory.values().length)
+        {
+            throw new IllegalArgumentException("A score is required for every category.");
+        }
+
+        PlayerStats stats = getOrCreate(playerId);
+        stats.games.increment();
+
+        for (int category = 0; category < categoryScores.length; category++)
+        {
+            if (categoryScores[category] > 0)
+            {
+                updateCategoryRecord(category, stats, stats.categoryHits.incrementAndGet(category));
+            }
+        }
+
+        updateBestScore(stats, totalScore);
+    }
+
+    /**
+     * Returns the number of players that have submitted at least one game.
+     */
+    public int getPlayerCount()
+    {
+        return players.size();
+    }
+
+    /**
+     * Returns the rank of a player, based on their best score. Players with the
+     * same best score share the same rank.
+     *
+     * @param playerId The player to look up.
+     *
+     * @return The 1-based rank of the player, or -1 if the player is unknown.
+     */
+    public int getRank(String playerId)
+    {
+        PlayerStats stats = playerId == null ? null : players.get(playerId);
+        int best = stats == null ? -1 : stats.bestScore.get();
+
+        if (best < 0)
+        {
+            return -1;
+        }
+
+        return getRankForScore(best);
+    }
+
+    /**
+     * Returns the rank a player with the given best score would have.
+     */
+    public int getRankForScore(int score)
+    {
+        long better = 0;
+
+        for (int s = maxScore; s > score; s--)
+        {
+            better += bucketCounts[s].sum();
+        }
+
+        return (int) Math.min(Integer.MAX_VALUE, better + 1);
+    }
+
+    /**
+     * Returns the players with the highest best scores.
+     *
+     * @param n The maximum number of entries to return.
+     *
+     * @return Up to n entries, ordered by rank. Players with the same score are
+     *         in no particular order.
+     */
+    public List<LeaderboardEntry> getTop(int n)
+    {
+        List<LeaderboardEntry> top = new ArrayList<LeaderboardEntry>(Math.max(0, Math.min(n, 1024)));
+        Set<String> seen = new HashSet<String>();
+        long better = 0;
+
+        for (int score = maxScore; score >= 0 && top.size() < n; score--)
+        {
+            if (bucketCounts[score].sum() == 0)
+            {
+                continue;
+            }
+
+            int added = 0;
+
+            for (PlayerStats stats : buckets[score])
+            {
+                if (top.size() >= n)
+                {
+                    break;
+                }
+
+                if (stats.bestScore.get() != score)
+                {
+                    // Left behind by a concurrent improvement
+                    buckets[score].remove(stats);
+                    continue;
+                }
+
+                if (!seen.add(stats.playerId))
+                {
+                    continue;
+                }
+
+                LeaderboardEntry entry = new LeaderboardEntry();
+                entry.playerId = stats.playerId;
+                entry.value = score;
+                entry.rank = (int) Math.min(Integer.MAX_VALUE, better + 1);
+                top.add(entry);
+                added++;
+            }
+
+            better += added;
+        }
+
+        return top;
+    }
+
+    /**
+     * Returns the player who scored on the given category the most times.
+     *
+     * @param category The ScoreCategory to look up.
+     *
+     * @return The record holder, with the number of hits as value, or null if
+     *         nobody has scored on the category yet.
+     */
+    public LeaderboardEntry getCategoryRecord(ScoreCategory category)
+    {
+        return categoryRecords.get(category.ordinal());
+    }
+
+    /**
+     * Returns the number of games a player has submitted, or 0 if unknown.
+     */
+    public long getGamesPlayed(String playerId)
+    {
+        PlayerStats stats = playerId == null ? null : players.get(playerId);
+        return stats == null ? 0 : stats.games.sum();
+    }
+
+    /**
+     * Writes every player's stats to the given file. Submissions keep running
+     * while the snapshot is taken, so each player is consistent with some point
+     * during the snapshot. The data is first written to a temporary file that
+     * is then moved over the target, so the target is never left half written.
+     *
+     * @param file The file to write.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    public void snapshot(Path file) throws IOException
+    {
+        Path parent = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+
+        try
+        {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)));
+
+            try
+            {
+                int categories = ScoreCategory.values().length;
+
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(categories);
+
+                for (Map.Entry<String, PlayerStats> entry : players.entrySet())
+                {
+                    PlayerStats stats = entry.getValue();
+
+                    out.writeBoolean(true);
+                    out.writeUTF(stats.playerId);
+                    out.writeInt(stats.bestScore.get());
+                    out.writeLong(stats.games.sum());
+
+                    for (int category = 0; category < categories; category++)
+                    {
+                        out.writeLong(stats.categoryHits.get(category));
+                    }
+                }
+
+                out.writeBoolean(false);
+            }
+            finally
+            {
+                out.close();
+            }
+
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Loads the players stored in a snapshot into this leaderboard. Players that
+     * are already present keep the better of both best scores, and add up their
+     * games and category hits.
+     *
+     * @param file The snapshot file to read.
+     *
+     * @throws IOException If the file cannot be read, or is not a snapshot.
+     */
+    public void restore(Path file) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+
+        try
+        {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION)
+            {
+                throw new IOException(file + " is not a leaderboard snapshot.");
+            }
+
+            int categories = in.readInt();
+            if (categories != ScoreCategory.values().length)
+            {
+                throw new IOException("Snapshot has " + categories + " categories, expected "
+                        + ScoreCategory.values().length + ".");
+            }
+
+            while (in.readBoolean())
+            {
+                PlayerStats stats = getOrCreate(in.readUTF());
+                int best = in.readInt();
+                stats.games.add(in.readLong());
+
+                for (int category = 0; category < categories; category++)
+                {
+                    long hits = in.readLong();
+
+                    if (hits > 0)
+                    {
+                        updateCategoryRecord(category, stats, stats.categoryHits.addAndGet(category, hits));
+                    }
+                }
+
+                if (best >= 0)
+                {
+                    updateBestScore(stats, Math.min(best, maxScore));
+                }
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private PlayerStats getOrCreate(String playerId)
+    {
+        PlayerStats stats = players.get(playerId);
+
+        if (stats == null)
+        {
+            PlayerStats created = new PlayerStats(playerId);
+            stats = players.putIfAbsent(playerId, created);
+
+            if (stats == null)
+            {
+                stats = created;
+            }
+        }
+
+        return stats;
+    }
+
+    private void updateBestScore(PlayerStats stats, int score)
+    {
+        int current = stats.bestScore.get();
+
+        while (score > current)
+        {
+            if (stats.bestScore.compareAndSet(current, score))
+            {
+                // Add to the new bucket before leaving the old one, so the
+                // player never disappears from the leaderboard
+                buckets[score].add(stats);
+                bucketCounts[score].increment();
+
+                if (current >= 0)
+                {
+                    buckets[current].remove(stats);
+                    bucketCounts[current].decrement();
+                }
+
+                return;
+            }
+
+            current = stats.bestScore.get();
+        }
+    }
+
+    private void updateCategoryRecord(int category, PlayerStats stats, long hits)
+    {
+        LeaderboardEntry current = categoryRecords.get(category);
+
+        while (current == null || hits > current.value)
+        {
+            LeaderboardEntry record = new LeaderboardEntry();
+            record.playerId = stats.playerId;
+            record.value = hits;
+            record.rank = 1;
+
+            if (categoryRecords.compareAndSet(category, current, record))
+            {
+                return;
+            }
+
+            current = categoryRecords.get(category);
+        }
+    }
+
+    private static int getMaxTotalScore()
+    {
+        CanonicalRollSpace space = CanonicalRollSpace.getInstance();
+        int max = 0;
+
+        for (ScoreCategory category : GameConstants.ALL_SCORE_CATEGORIES)
+        {
+            max += space.getMaxScore(category);
+        }
+
+        return max;
+    }
+
+    /**
+     * Stats kept for every player. Identity based equality, as there is a
+     * single instance per player.
+     */
+    private static final class PlayerStats
+    {
+        final String playerId;
+        final AtomicInteger bestScore = new AtomicInteger(-1);
+        final LongAdder games = new LongAdder();
+        final AtomicLongArray categoryHits = new AtomicLongArray(ScoreCategory.values().length);
+
+        PlayerStats(String playerId)
+        {
+            this.playerId = playerId;
+        }
+    }
+}
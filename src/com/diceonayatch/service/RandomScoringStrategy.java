@@ -0,0 +1,38 @@
+package com.diceonayatch.service;
+
+import com.diceonayatch.model.DiceRoll;
+import com.diceonayatch.model.ScoreCategory;
+
+import java.util.Random;
+
+/**
+ * Scores every roll on an open category picked uniformly at random. Mostly
+ * useful as a baseline for other strategies.
+ *
+ * @author agent 10/19/26.
+ */
+public class RandomScoringStrategy implements ScoringStrategy
+{
+    // Local reference for more efficient lookup
+    private static final ScoreCategory[] CATEGORIES = ScoreCategory.values();
+
+    @Override
+    public String getName()
+    {
+        return "Random";
+    }
+
+    @Override
+    public ScoreCategory chooseCategory(DiceRoll diceRoll, int openCategories, Random random)
+    {
+        int pick = random.nextInt(Integer.bitCount(openCategories));
+
+        // Clear the lowest open bits until we reach the picked one
+        for (int i = 0; i < pick; i++)
+        {
+            openCategories &= openCategories - 1;
+        }
+
+        return CATEGORIES[Integer.numberOfTrailingZeros(openCategories)];
+    }
+}
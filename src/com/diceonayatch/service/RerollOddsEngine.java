@@ -0,0 +1,284 @@
+package com.diceonayatch.service;
+
+import com.diceonayatch.model.ScoreCategory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers reroll odds questions such as "what is the probability of scoring a
+ * FULL_HOUSE within 2 rerolls while holding {3,3,5}", exactly and without
+ * simulating.
+ *
+ * The held dice are kept for the first reroll. If more rerolls remain after
+ * that, the best hold is chosen for each of them, i.e. the answer assumes the
+ * player keeps playing optimally for the requested goal.
+ *
+ * Answers are computed backwards from the final roll with one sparse
+ * matrix-vector product per reroll, using the shared RerollTransitionMatrix.
+ * The vector obtained for each (goal, category, rerolls) combination holds the
+ * answer for every canonical hold at once, so it is cached and later queries
+ * for any hold are a single array lookup. Vectors are built in a loop from 1
+ * reroll up, and once a reroll no longer changes the vector, it is the answer
+ * for any number of rerolls, so no more are built. At most MAX_REROLLS
+ * rerolls are supported, which bounds the number of cached vectors.
+ *
+ * This class is thread safe, and a single instance can be shared.
+ *
+ * @author agent 10/19/26.
+ */
+public class RerollOddsEngine
+{
+    public static final int MAX_REROLLS = 64;
+
+    // What the value vectors measure
+    private static final int GOAL_HIT = 0;
+    private static final int GOAL_SCORE = 1;
+
+    private final RerollTransitionMatrix matrix;
+    private final CanonicalRollSpace space;
+
+    // (goal, category) -> value for every hold by number of rerolls
+    private final ConcurrentHashMap<Integer, HoldValues> holdValues;
+
+    public RerollOddsEngine()
+    {
+        this(RerollTransitionMatrix.getInstance());
+    }
+
+    public RerollOddsEngine(RerollTransitionMatrix matrix)
+    {
+        this.matrix = matrix;
+        this.space = matrix.getSpace();
+        this.holdValues = new ConcurrentHashMap<Integer, HoldValues>();
+    }
+
+    /**
+     * Calculates the probability of scoring more than zero in the given category,
+     * keeping the held dice for the first reroll and holding optimally afterwards.
+     *
+     * @param held     The values of the dice being kept, in any order. If no rerolls
+     *                 are left it must contain a value for every die.
+     * @param category The ScoreCategory we want to hit.
+     * @param rerolls  The number of rerolls left, at most MAX_REROLLS.
+     *
+     * @return The probability, between 0 and 1, of hitting the category.
+     */
+    public double getHitProbability(int[] held, ScoreCategory category, int rerolls)
+    {
+        return query(GOAL_HIT, held, category, rerolls);
+    }
+
+    /**
+     * Calculates the expected score in the given category, keeping the held dice
+     * for the first reroll and holding optimally afterwards.
+     *
+     * @param held     The values of the dice being kept, in any order. If no rerolls
+     *                 are left it must contain a value for every die.
+     * @param category The ScoreCategory we want to score on.
+     * @param rerolls  The number of rerolls left, at most MAX_REROLLS.
+     *
+     * @return The expected score in the category.
+     */
+    public double getExpectedScore(int[] held, ScoreCategory category, int rerolls)
+    {
+        return query(GOAL_SCORE, held, category, rerolls);
+    }
+
+    /**
+     * Returns the number of (goal, category, rerolls) vectors currently cached.
+     */
+    public int getCachedVectorCount()
+    {
+        int count = 0;
+
+        for (HoldValues values : holdValues.values())
+        {
+            count += values.getCount();
+        }
+
+        return count;
+    }
+
+    private double query(int goal, int[] held, ScoreCategory category, int rerolls)
+    {
+        if (category == null)
+        {
+            throw new IllegalArgumentException("ScoreCategory cannot be null.");
+        }
+
+        if (rerolls < 0 || rerolls > MAX_REROLLS)
+        {
+            throw new IllegalArgumentException("Number of rerolls must be between 0 and " + MAX_REROLLS + ".");
+        }
+
+        if (held == null)
+        {
+            throw new IllegalArgumentException("Held dice cannot be null.");
+        }
+
+        int hold = space.getMultisetIndex(held, held.length);
+
+        if (rerolls == 0)
+        {
+            int roll = space.getRollForMultiset(hold);
+
+            if (roll < 0)
+            {
+                throw new IllegalArgumentException("A value for every die must be held "
+                        + "when there are no rerolls left.");
+            }
+
+            int score = space.getScore(roll, category);
+            return goal == GOAL_HIT ? (score > 0 ? 1 : 0) : score;
+        }
+
+        return holdValues(goal, category, rerolls)[hold];
+    }
+
+    /**
+     * Expected value of the goal for every hold, when rerolling around the hold
+     * and then having rerolls - 1 rerolls left.
+     */
+    private double[] holdValues(int goal, ScoreCategory category, int rerolls)
+    {
+        Integer key = (category.ordinal() << 1) | goal;
+        HoldValues values = holdValues.get(key);
+
+        if (values == null)
+        {
+            HoldValues created = new HoldValues(goal, category);
+            values = holdValues.putIfAbsent(key, created);
+
+            if (values == null)
+            {
+                values = created;
+            }
+        }
+
+        return values.get(rerolls);
+    }
+
+    /**
+     * Expected value of the goal for every roll with no rerolls left.
+     */
+    private double[] finalRollValues(int goal, ScoreCategory category)
+    {
+        double[] values = new double[space.getRollCount()];
+
+        for (int roll = 0; roll < values.length; roll++)
+        {
+            int score = space.getScore(roll, category);
+            values[roll] = goal == GOAL_HIT ? (score > 0 ? 1 : 0) : score;
+        }
+
+        return values;
+    }
+
+    /**
+     * Expected value of the goal for every roll, when the best hold is picked
+     * for each one of them.
+     *
+     * @param holds The value of every hold after rerolling around it.
+     */
+    private double[] bestHoldValues(double[] holds)
+    {
+        double[] values = new double[space.getRollCount()];
+
+        for (int roll = 0; roll < values.length; roll++)
+        {
+            // Holding every die is one of the options, so this also covers
+            // stopping early
+            double best = 0;
+
+            for (int hold : space.getHolds(roll))
+            {
+                best = Math.max(best, holds[hold]);
+            }
+
+            values[roll] = best;
+        }
+
+        return values;
+    }
+
+    /**
+     * The hold vectors of one (goal, category), for 1, 2, ... rerolls. Built
+     * under the object's lock, and published as a new array, so lookups of
+     * vectors already built never lock.
+     */
+    private final class HoldValues
+    {
+        private final int goal;
+        private final ScoreCategory category;
+
+        // Element r is the vector for r + 1 rerolls
+        private volatile double[][] vectors = new double[0][];
+
+        // Set once a reroll no longer changes the vector, so the last one holds
+        // for any number of rerolls
+        private volatile boolean converged;
+
+        HoldValues(int goal, ScoreCategory category)
+        {
+            this.goal = goal;
+            this.category = category;
+        }
+
+        int getCount()
+        {
+            return vectors.length;
+        }
+
+        double[] get(int rerolls)
+        {
+            // Read first, as the vectors are published before it is set
+            boolean complete = converged;
+            double[][] built = vectors;
+
+            if (rerolls > built.length && !complete)
+            {
+                built = build(rerolls);
+            }
+
+            return built[Math.min(rerolls, built.length) - 1];
+        }
+
+        private synchronized double[][] build(int rerolls)
+        {
+            double[][] built = vectors;
+
+            if (rerolls <= built.length || converged)
+            {
+                return built;
+            }
+
+            List<double[]> list = new ArrayList<double[]>(Arrays.asList(built));
+            boolean unchanged = false;
+            double[] rollValues = list.isEmpty() ? finalRollValues(goal, category)
+                    : bestHoldValues(list.get(list.size() - 1));
+
+            while (list.size() < rerolls)
+            {
+                double[] values = matrix.multiply(rollValues, new double[space.getMultisetCount()]);
+
+                if (!list.isEmpty() && Arrays.equals(values, list.get(list.size() - 1)))
+                {
+                    unchanged = true;
+                    break;
+                }
+
+                list.add(values);
+                rollValues = bestHoldValues(values);
+            }
+
+            built = list.toArray(new double[list.size()][]);
+            vectors = built;
+            converged = unchanged;
+
+            return built;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.diceonayatch.service;
+
+/**
+ * Sparse, immutable matrix holding the probability of ending up with each
+ * canonical roll after keeping a hold and rerolling the remaining dice.
+ *
+ * Rows are multiset indices of the CanonicalRollSpace (the dice that are held),
+ * and columns are roll indices (the roll obtained after rerolling). Only the
+ * reachable rolls are stored, in compressed sparse row form, so a full
+ * matrix-vector product touches a few tens of thousands of entries.
+ *
+ * Instances are shared through getInstance() and are safe to use from
+ * multiple threads.
+ *
+ * @author agent 10/19/26.
+ */
+public final class RerollTransitionMatrix
+{
+    private static volatile RerollTransitionMatrix instance;
+
+    private final CanonicalRollSpace space;
+
+    // Compressed sparse row storage: the entries of row r are stored in
+    // [rowStart[r], rowStart[r + 1]) of columns and probabilities
+    private final int[] rowStart;
+    private final int[] columns;
+    private final double[] probabilities;
+
+    private RerollTransitionMatrix(CanonicalRollSpace space)
+    {
+        this.space = space;
+
+        int dice = space.getNumberOfDice();
+        int rows = space.getMultisetCount();
+
+        // Number of equally likely outcomes when rolling n dice
+        double[] outcomes = new double[dice + 1];
+        outcomes[0] = 1;
+        for (int n = 1; n <= dice; n++)
+        {
+            outcomes[n] = outcomes[n - 1] * space.getValuesPerDie();
+        }
+
+        // First pass to size the storage
+        rowStart = new int[rows + 1];
+        for (int hold = 0; hold < rows; hold++)
+        {
+            int rerolled = dice - space.getFaces(hold).length;
+            rowStart[hold + 1] = rowStart[hold] + space.getFirstMultisetOfSize(rerolled + 1)
+                    - space.getFirstMultisetOfSize(rerolled);
+        }
+
+        columns = new int[rowStart[rows]];
+        probabilities = new double[rowStart[rows]];
+
+        int[] merged = new int[dice];
+
+        for (int hold = 0; hold < rows; hold++)
+        {
+            int[] held = space.getFaces(hold);
+            int rerolled = dice - held.length;
+            int entry = rowStart[hold];
+
+            // Every multiset of the rerolled dice leads to a different roll
+            int first = space.getFirstMultisetOfSize(rerolled);
+            int last = space.getFirstMultisetOfSize(rerolled + 1);
+
+            for (int outcome = first; outcome < last; outcome++)
+            {
+                int[] rolled = space.getFaces(outcome);
+                System.arraycopy(held, 0, merged, 0, held.length);
+                System.arraycopy(rolled, 0, merged, held.length, rolled.length);
+
+                columns[entry] = space.getRollForMultiset(space.getMultisetIndex(merged, dice));
+                probabilities[entry] = space.getPermutations(outcome) / outcomes[rerolled];
+                entry++;
+            }
+
+            sortRow(rowStart[hold], entry);
+        }
+    }
+
+    /**
+     * Returns the shared transition matrix for the shared CanonicalRollSpace.
+     *
+     * @return The shared, immutable RerollTransitionMatrix instance.
+     */
+    public static RerollTransitionMatrix getInstance()
+    {
+        RerollTransitionMatrix matrix = instance;
+
+        if (matrix == null)
+        {
+            synchronized (RerollTransitionMatrix.class)
+            {
+                matrix = instance;
+
+                if (matrix == null)
+                {
+                    matrix = new RerollTransitionMatrix(CanonicalRollSpace.getInstance());
+                    instance = matrix;
+                }
+            }
+        }
+
+        return matrix;
+    }
+
+    public CanonicalRollSpace getSpace()
+    {
+        return space;
+    }
+
+    /**
+     * Returns the number of non-zero entries stored in the matrix.
+     */
+    public int getEntryCount()
+    {
+        return columns.length;
+    }
+
+    /**
+     * Multiplies the matrix by a vector indexed by roll, producing a vector
+     * indexed by hold. I.e., for every hold it computes the expected value of
+     * rollValues after keeping the hold and rerolling the remaining dice.
+     *
+     * @param rollValues A value for every roll index.
+     * @param out        Output array, with one entry per multiset index.
+     *
+     * @return The out array, for convenience.
+     */
+    public double[] multiply(double[] rollValues, double[] out)
+    {
+        if (rollValues.length != space.getRollCount() || out.length != space.getMultisetCount())
+        {
+            throw new IllegalArgumentException("Vector sizes do not match the roll space.");
+        }
+
+        for (int hold = 0; hold < out.length; hold++)
+        {
+            out[hold] = multiplyRow(hold, rollValues);
+        }
+
+        return out;
+    }
+
+    /**
+     * Multiplies the matrix by several vectors indexed by roll at once, stored
+     * interleaved, so the innermost loop walks contiguous memory. Same as
+     * calling multiply(double[], double[]) for each vector.
+     *
+     * @param rollValues Width values for every roll index, where value j of roll
+     *                   r is at r * width + j.
+     * @param out        Output array, with width values per multiset index.
+     * @param width      The number of vectors.
+     *
+     * @return The out array, for convenience.
+     */
+    public double[] multiply(double[] rollValues, double[] out, int width)
+    {
+        if (rollValues.length < space.getRollCount() * width || out.length < space.getMultisetCount() * width)
+        {
+            throw new IllegalArgumentException("Vector sizes do not match the roll space.");
+        }
+
+        for (int hold = 0; hold < space.getMultisetCount(); hold++)
+        {
+            int target = hold * width;
+
+            for (int j = 0; j < width; j++)
+            {
+                out[target + j] = 0;
+            }
+
+            for (int i = rowStart[hold]; i < rowStart[hold + 1]; i++)
+            {
+                double probability = probabilities[i];
+                int source = columns[i] * width;
+
+                for (int j = 0; j < width; j++)
+                {
+                    out[target + j] += probability * rollValues[source + j];
+                }
+            }
+        }
+
+        return out;
+    }
+
+    /**
+     * Computes the dot product of a single row with a vector indexed by roll.
+     *
+     * @param hold       The multiset index of the row.
+     * @param rollValues A value for every roll index.
+     *
+     * @return The expected value of rollValues after rerolling around the hold.
+     */
+    public double multiplyRow(int hold, double[] rollValues)
+    {
+        double sum = 0;
+
+        for (int i = rowStart[hold]; i < rowStart[hold + 1]; i++)
+        {
+            sum += probabilities[i] * rollValues[columns[i]];
+        }
+
+        return sum;
+    }
+
+    /**
+     * Sorts a row by column so that products walk the vector sequentially.
+     * Rows are small (at most a few hundred entries), so an insertion sort is
+     * good enough.
+     */
+    private void sortRow(int from, int to)
+    {
+        for (int i = from + 1; i < to; i++)
+        {
+            int column = columns[i];
+            double probability = probabilities[i];
+            int j = i - 1;
+
+            while (j >= from && columns[j] > column)
+            {
+                columns[j + 1] = columns[j];
+                probabilities[j + 1] = probabilities[j];
+                j--;
+            }
+
+            columns[j + 1] = column;
+            probabilities[j + 1] = probability;
+        }
+    }
+}
@@ -0,0 +1,571 @@
+package com.diceonayatch.service;
+
+import com.diceonayatch.metadata.GameConstants;
+import com.diceonayatch.model.DiceRoll;
+import com.diceonayatch.model.ScoreCategory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * In-memory, column oriented store for large numbers of rolls, meant for
+ * ad-hoc analytics such as "distribution of best category by the value of
+ * the first die".
+ *
+ * Rows are never materialized as DiceRoll objects. Each row is stored as one
+ * byte per column in off-heap (direct) buffers, in chunks of CHUNK_ROWS rows
+ * where every column is contiguous. Besides the value of each die, the
+ * derived columns (sum, best category, score for each category, etc.) are
+ * filled in when a roll is appended, from tables precomputed for every
+ * canonical roll.
+ *
+ * All values in the store are small, so every query is answered by building
+ * a histogram of (group column, value column) pairs for the rows that pass a
+ * filter. Counts, sums and means are derived from that histogram. Chunks are
+ * scanned in parallel on a ForkJoinPool, and each scan only allocates its
+ * histograms and a single Row cursor.
+ *
+ * Appending is not thread safe, and must not happen while a query runs. The
+ * row count is a plain long and the chunks are kept in a plain ArrayList,
+ * which queries read and hand to ForkJoin workers without any locking, so a
+ * concurrent append may be partly visible or corrupt the list. Callers that
+ * append and query from different threads must synchronize them externally.
+ * Queries can run concurrently with each other.
+ *
+ * @author agent 10/19/26.
+ */
+public class RollAnalyticsStore
+{
+    public static final int CHUNK_ROWS = 1 << 16;
+
+    // Column layout. Die columns come first, one per die.
+    public static final int SUM = GameConstants.TOTAL_NUMBER_OF_DICE;
+    public static final int BEST_CATEGORY = SUM + 1;
+    public static final int BEST_SCORE = SUM + 2;
+    public static final int DISTINCT_FACES = SUM + 3;
+    public static final int MAX_MULTIPLICITY = SUM + 4;
+    private static final int FIRST_SCORE_COLUMN = SUM + 5;
+
+    public static final int COLUMN_COUNT = FIRST_SCORE_COLUMN + ScoreCategory.values().length;
+
+    // Group column for queries that do not group, every row falls in group 0
+    public static final int NO_GROUP = -1;
+
+    private final CanonicalRollSpace space;
+    private final ForkJoinPool pool;
+
+    // Derived column values for every canonical roll, as [roll * COLUMN_COUNT + column].
+    // Die columns are left empty, as they depend on the order of the dice.
+    private final byte[] derivedColumns;
+
+    // Number of distinct values each column can take, i.e. max value + 1
+    private final int[] cardinalities;
+
+    private final List<ByteBuffer> chunks;
+    private long rows;
+
+    public RollAnalyticsStore()
+    {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public RollAnalyticsStore(ForkJoinPool pool)
+    {
+        if (pool == null)
+        {
+            throw new IllegalArgumentException("ForkJoinPool cannot be null.");
+        }
+
+        this.pool = pool;
+        this.space = CanonicalRollSpace.getInstance();
+        this.chunks = new ArrayList<ByteBuffer>();
+        this.derivedColumns = new byte[space.getRollCount() * COLUMN_COUNT];
+        this.cardinalities = new int[COLUMN_COUNT];
+
+        for (int die = 0; die < GameConstants.TOTAL_NUMBER_OF_DICE; die++)
+        {
+            cardinalities[die] = GameConstants.VALUES_PER_DIE + 1;
+        }
+
+        for (int roll = 0; roll < space.getRollCount(); roll++)
+        {
+            computeDerivedColumns(roll);
+        }
+
+        for (int i = 0; i < derivedColumns.length; i++)
+        {
+            int column = i % COLUMN_COUNT;
+            cardinalities[column] = Math.max(cardinalities[column], derivedColumns[i] + 1);
+        }
+    }
+
+    /**
+     * Returns the column holding the value of the given die.
+     *
+     * @param die The zero-based die number.
+     *
+     * @return The column index.
+     */
+    public static int dieColumn(int die)
+    {
+        if (die < 0 || die >= GameConstants.TOTAL_NUMBER_OF_DICE)
+        {
+            throw new IllegalArgumentException("There is no die " + die + ".");
+        }
+
+        return die;
+    }
+
+    /**
+     * Returns the column holding the score for the given category.
+     *
+     * @param category The ScoreCategory.
+     *
+     * @return The column index.
+     */
+    public static int scoreColumn(ScoreCategory category)
+    {
+        return FIRST_SCORE_COLUMN + category.ordinal();
+    }
+
+    /**
+     * Returns the number of distinct values a column can hold, i.e. the length
+     * of the arrays returned by queries that use it.
+     */
+    public int getCardinality(int column)
+    {
+        return column == NO_GROUP ? 1 : cardinalities[checkColumn(column)];
+    }
+
+    public long getRowCount()
+    {
+        return rows;
+    }
+
+    /**
+     * Returns the number of off-heap bytes allocated by the store.
+     */
+    public long getOffHeapBytes()
+    {
+        return (long) chunks.size() * CHUNK_ROWS * COLUMN_COUNT;
+    }
+
+    /**
+     * Appends a roll to the store.
+     *
+     * @param diceRoll The DiceRoll to append.
+     */
+    public void append(DiceRoll diceRoll)
+    {
+        if (diceRoll == null)
+        {
+            throw new IllegalArgumentException("DiceRoll cannot be null.");
+        }
+
+        append(diceRoll.getResults());
+    }
+
+    /**
+     * Appends a roll to the store, given the value of each die.
+     *
+     * @param results The value of each die, in roll order.
+     */
+    public void append(int[] results)
+    {
+        int roll = space.getRollIndex(results);
+        int row = (int) (rows % CHUNK_ROWS);
+
+        if (row == 0)
+        {
+            chunks.add(ByteBuffer.allocateDirect(CHUNK_ROWS * COLUMN_COUNT));
+        }
+
+        ByteBuffer chunk = chunks.get(chunks.size() - 1);
+
+        for (int die = 0; die < GameConstants.TOTAL_NUMBER_OF_DICE; die++)
+        {
+            chunk.put(die * CHUNK_ROWS + row, (byte) results[die]);
+        }
+
+        int derived = roll * COLUMN_COUNT;
+        for (int column = SUM; column < COLUMN_COUNT; column++)
+        {
+            chunk.put(column * CHUNK_ROWS + row, derivedColumns[derived + column]);
+        }
+
+        rows++;
+    }
+
+    /**
+     * Releases every chunk. The off-heap memory is returned once the buffers
+     * are garbage collected.
+     */
+    public void clear()
+    {
+        chunks.clear();
+        rows = 0;
+    }
+
+    /**
+     * Counts the rows that pass the filter.
+     */
+    public long count(RowFilter filter)
+    {
+        return count(filter, NO_GROUP)[0];
+    }
+
+    /**
+     * Counts the rows that pass the filter, grouped by the value of a column.
+     *
+     * @param filter      The filter rows must pass.
+     * @param groupColumn The column to group by, or NO_GROUP.
+     *
+     * @return The number of rows for each value of the group column.
+     */
+    public long[] count(RowFilter filter, int groupColumn)
+    {
+        long[][] histogram = histogram(filter, groupColumn, groupColumn == NO_GROUP ? SUM : groupColumn);
+        long[] counts = new long[histogram.length];
+
+        for (int group = 0; group < histogram.length; group++)
+        {
+            for (long count : histogram[group])
+            {
+                counts[group] += count;
+            }
+        }
+
+        return counts;
+    }
+
+    /**
+     * Sums a column over the rows that pass the filter, grouped by the value of
+     * another column.
+     *
+     * @param filter      The filter rows must pass.
+     * @param groupColumn The column to group by, or NO_GROUP.
+     * @param valueColumn The column to sum.
+     *
+     * @return The sum of the value column for each value of the group column.
+     */
+    public long[] sum(RowFilter filter, int groupColumn, int valueColumn)
+    {
+        long[][] histogram = histogram(filter, groupColumn, valueColumn);
+        long[] sums = new long[histogram.length];
+
+        for (int group = 0; group < histogram.length; group++)
+        {
+            for (int value = 0; value < histogram[group].length; value++)
+            {
+                sums[group] += value * histogram[group][value];
+            }
+        }
+
+        return sums;
+    }
+
+    /**
+     * Averages a column over the rows that pass the filter, grouped by the
+     * value of another column. Groups without rows average to 0.
+     *
+     * @param filter      The filter rows must pass.
+     * @param groupColumn The column to group by, or NO_GROUP.
+     * @param valueColumn The column to average.
+     *
+     * @return The mean of the value column for each value of the group column.
+     */
+    public double[] mean(RowFilter filter, int groupColumn, int valueColumn)
+    {
+        long[][] histogram = histogram(filter, groupColumn, valueColumn);
+        double[] means = new double[histogram.length];
+
+        for (int group = 0; group < histogram.length; group++)
+        {
+            long count = 0;
+            long sum = 0;
+
+            for (int value = 0; value < histogram[group].length; value++)
+            {
+                count += histogram[group][value];
+                sum += value * histogram[group][value];
+            }
+
+            means[group] = count == 0 ? 0 : (double) sum / count;
+        }
+
+        return means;
+    }
+
+    /**
+     * Builds the distribution of a column over the rows that pass the filter,
+     * grouped by the value of another column. E.g. the distribution of the
+     * best category by the value of the first die is
+     * histogram(RowFilter.ALL, dieColumn(0), BEST_CATEGORY).
+     *
+     * @param filter      The filter rows must pass.
+     * @param groupColumn The column to group by, or NO_GROUP.
+     * @param valueColumn The column whose distribution is computed.
+     *
+     * @return The number of rows, as [group value][column value].
+     */
+    public long[][] histogram(RowFilter filter, int groupColumn, int valueColumn)
+    {
+        if (filter == null)
+        {
+            throw new IllegalArgumentException("RowFilter cannot be null.");
+        }
+
+        checkColumn(valueColumn);
+        if (groupColumn != NO_GROUP)
+        {
+            checkColumn(groupColumn);
+        }
+
+        ByteBuffer[] snapshot = chunks.toArray(new ByteBuffer[chunks.size()]);
+        long[][] result = pool.invoke(new ScanTask(snapshot, rows, 0, snapshot.length, filter,
+                groupColumn, valueColumn));
+
+        return result != null ? result : new long[getCardinality(groupColumn)][getCardinality(valueColumn)];
+    }
+
+    private int checkColumn(int column)
+    {
+        if (column < 0 || column >= COLUMN_COUNT)
+        {
+            throw new IllegalArgumentException("There is no column " + column + ".");
+        }
+
+        return column;
+    }
+
+    private void computeDerivedColumns(int roll)
+    {
+        int[] faces = space.getRollFaces(roll);
+        int offset = roll * COLUMN_COUNT;
+
+        int sum = 0;
+        int distinct = 0;
+        int maxMultiplicity = 0;
+        int run = 0;
+
+        for (int i = 0; i < faces.length; i++)
+        {
+            sum += faces[i];
+            run = (i > 0 && faces[i] == faces[i - 1]) ? run + 1 : 1;
+            distinct += run == 1 ? 1 : 0;
+            maxMultiplicity = Math.max(maxMultiplicity, run);
+        }
+
+        // Same rules as DiceRollEvaluator.getHighestScoringCategory
+        final ScoreCategory[] categories = GameConstants.ALL_SCORE_CATEGORIES;
+        int maxScore = 0;
+        ScoreCategory maxCategory = categories[0];
+
+        for (ScoreCategory category : categories)
+        {
+            int score = space.getScore(roll, category);
+            derivedColumns[offset + scoreColumn(category)] = (byte) score;
+
+            if (score > maxScore)
+            {
+                maxScore = score;
+                maxCategory = category;
+            }
+        }
+
+        derivedColumns[offset + SUM] = (byte) sum;
+        derivedColumns[offset + BEST_CATEGORY] = (byte) maxCategory.ordinal();
+        derivedColumns[offset + BEST_SCORE] = (byte) maxScore;
+        derivedColumns[offset + DISTINCT_FACES] = (byte) distinct;
+        derivedColumns[offset + MAX_MULTIPLICITY] = (byte) maxMultiplicity;
+    }
+
+    /**
+     * Cursor over the rows of a chunk, handed to a RowFilter. A single Row is
+     * reused for every row of a scan, so filters must not keep a reference to it.
+     */
+    public static final class Row
+    {
+        private ByteBuffer chunk;
+        private int row;
+
+        /**
+         * Returns the value of a column for the current row.
+         *
+         * @param column The column index.
+         *
+         * @return The value stored in the column.
+         */
+        public int get(int column)
+        {
+            return chunk.get(column * CHUNK_ROWS + row);
+        }
+
+        /**
+         * Returns how many dice in the current row show the given face.
+         */
+        public int countFace(int face)
+        {
+            int count = 0;
+
+            for (int die = 0; die < GameConstants.TOTAL_NUMBER_OF_DICE; die++)
+            {
+                count += chunk.get(die * CHUNK_ROWS + row) == face ? 1 : 0;
+            }
+
+            return count;
+        }
+    }
+
+    /**
+     * Condition rows must meet to be included in a query. Filters are called
+     * concurrently from several threads, so they must be stateless.
+     */
+    public interface RowFilter
+    {
+        RowFilter ALL = new RowFilter()
+        {
+            @Override
+            public boolean test(Row row)
+            {
+                return true;
+            }
+        };
+
+        boolean test(Row row);
+    }
+
+    /**
+     * Returns a filter for rows where the column equals the given value.
+     */
+    public static RowFilter equalTo(final int column, final int value)
+    {
+        return between(column, value, value);
+    }
+
+    /**
+     * Returns a filter for rows where the column is within the given range,
+     * both ends inclusive. E.g. rows containing at least a pair are
+     * between(MAX_MULTIPLICITY, 2, GameConstants.TOTAL_NUMBER_OF_DICE).
+     */
+    public static RowFilter between(final int column, final int min, final int max)
+    {
+        if (column < 0 || column >= COLUMN_COUNT)
+        {
+            throw new IllegalArgumentException("There is no column " + column + ".");
+        }
+
+        return new RowFilter()
+        {
+            @Override
+            public boolean test(Row row)
+            {
+                int value = row.get(column);
+                return value >= min && value <= max;
+            }
+        };
+    }
+
+    /**
+     * Returns a filter for rows that pass both filters.
+     */
+    public static RowFilter and(final RowFilter first, final RowFilter second)
+    {
+        return new RowFilter()
+        {
+            @Override
+            public boolean test(Row row)
+            {
+                return first.test(row) && second.test(row);
+            }
+        };
+    }
+
+    /**
+     * Scans a range of chunks, splitting until a single chunk is left.
+     */
+    private class ScanTask extends RecursiveTask<long[][]>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final ByteBuffer[] snapshot;
+        private final long totalRows;
+        private final int fromChunk;
+        private final int toChunk;
+        private final RowFilter filter;
+        private final int groupColumn;
+        private final int valueColumn;
+
+        ScanTask(ByteBuffer[] snapshot, long totalRows, int fromChunk, int toChunk, RowFilter filter,
+            int groupColumn, int valueColumn)
+        {
+            this.snapshot = snapshot;
+            this.totalRows = totalRows;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+            this.filter = filter;
+            this.groupColumn = groupColumn;
+            this.valueColumn = valueColumn;
+        }
+
+        @Override
+        protected long[][] compute()
+        {
+            if (toChunk - fromChunk <= 1)
+            {
+                return toChunk == fromChunk ? null : scanChunk(fromChunk);
+            }
+
+            int middle = (fromChunk + toChunk) >>> 1;
+            ScanTask left = new ScanTask(snapshot, totalRows, fromChunk, middle, filter, groupColumn,
+                    valueColumn);
+            ScanTask right = new ScanTask(snapshot, totalRows, middle, toChunk, filter, groupColumn,
+                    valueColumn);
+
+            left.fork();
+            long[][] result = right.compute();
+            long[][] other = left.join();
+
+            for (int group = 0; group < result.length; group++)
+            {
+                for (int value = 0; value < result[group].length; value++)
+                {
+                    result[group][value] += other[group][value];
+                }
+            }
+
+            return result;
+        }
+
+        private long[][] scanChunk(int index)
+        {
+            long[][] histogram = new long[getCardinality(groupColumn)][getCardinality(valueColumn)];
+
+            ByteBuffer chunk = snapshot[index];
+            long chunkStart = (long) index * CHUNK_ROWS;
+            int rowCount = (int) Math.min(CHUNK_ROWS, totalRows - chunkStart);
+
+            int groupOffset = groupColumn == NO_GROUP ? -1 : groupColumn * CHUNK_ROWS;
+            int valueOffset = valueColumn * CHUNK_ROWS;
+
+            Row row = new Row();
+            row.chunk = chunk;
+
+            for (int i = 0; i < rowCount; i++)
+            {
+                row.row = i;
+
+                if (filter.test(row))
+                {
+                    int group = groupOffset < 0 ? 0 : chunk.get(groupOffset + i);
+                    histogram[group][chunk.get(valueOffset + i)]++;
+                }
+            }
+
+            return histogram;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.diceonayatch.service;
+
+import com.diceonayatch.model.DiceRoll;
+import com.diceonayatch.model.ScoreCategory;
+
+/**
+ * Scores a DiceRoll in a ScoreCategory. The standard rules are implemented by
+ * DiceRollEvaluator, other implementations can be used to simulate house rule
+ * variants.
+ *
+ * Implementations are called from simulation loops, so they should be cheap
+ * and must not keep a reference to the DiceRoll, which may be reused.
+ *
+ * @author agent 10/19/26.
+ */
+public interface RollScorer
+{
+    int score(DiceRoll diceRoll, ScoreCategory category);
+}
@@ -0,0 +1,292 @@
+package com.diceonayatch.service;
+
+import com.diceonayatch.metadata.GameConstants;
+import com.diceonayatch.model.ImmutableDiceRoll;
+import com.diceonayatch.model.ScoreCategory;
+import com.diceonayatch.model.ScoreDistribution;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the exact probability distribution of the total score of a game
+ * played with a fixed ScoringStrategy, with the same rules as TournamentRunner:
+ * every turn rolls all the dice once and scores the roll on an open category,
+ * until every category has been used.
+ *
+ * Works backwards over scorecard states. For every mask of open categories
+ * the engine keeps the probability mass function (PMF) of the score still to
+ * come, as an array indexed by score, starting with a certain 0 once every
+ * category is used. The PMF of a mask is found by asking the strategy where
+ * each canonical roll would be scored, adding up the probability of every
+ * (category, score) pair, and convolving each pair with the PMF of the mask
+ * left after using the category. As each pair is a single score, the
+ * convolution is a shifted, weighted sum of the next PMF.
+ *
+ * Masks with the same number of open categories only depend on masks with
+ * one category fewer, so each layer is solved in parallel on a ForkJoinPool,
+ * and only two layers are kept in memory at once.
+ *
+ * The strategy must be deterministic, and only depend on the values rolled
+ * and the open categories. The Random it is given has a fixed seed.
+ *
+ * @author agent 10/19/26.
+ */
+public class ScoreDistributionEngine
+{
+    // Number of masks solved by a single task before it stops splitting
+    private static final int MASKS_PER_TASK = 32;
+
+    private static final ScoreCategory[] CATEGORIES = ScoreCategory.values();
+
+    private final ScoringStrategy strategy;
+    private final ForkJoinPool pool;
+
+    private final ImmutableDiceRoll[] rolls;
+    private final double[] rollProbabilities;
+    private final int[][] rollScores;
+    private final int[] maxScores;
+    private final int maxCategoryScore;
+
+    public ScoreDistributionEngine(ScoringStrategy strategy)
+    {
+        this(ForkJoinPool.commonPool(), strategy);
+    }
+
+    public ScoreDistributionEngine(ForkJoinPool pool, ScoringStrategy strategy)
+    {
+        if (pool == null)
+        {
+            throw new IllegalArgumentException("ForkJoinPool cannot be null.");
+        }
+
+        if (strategy == null)
+        {
+            throw new IllegalArgumentException("ScoringStrategy cannot be null.");
+        }
+
+        this.strategy = strategy;
+        this.pool = pool;
+
+        CanonicalRollSpace space = CanonicalRollSpace.getInstance();
+        double outcomes = Math.pow(space.getValuesPerDie(), space.getNumberOfDice());
+
+        // Immutable rolls, so strategies based on DiceRollEvaluator only
+        // evaluate each roll once
+        rolls = new ImmutableDiceRoll[space.getRollCount()];
+        rollProbabilities = new double[rolls.length];
+        rollScores = new int[rolls.length][CATEGORIES.length];
+
+        for (int roll = 0; roll < rolls.length; roll++)
+        {
+            rolls[roll] = new ImmutableDiceRoll(space.getRollFaces(roll));
+            rollProbabilities[roll] = space.getRollPermutations(roll) / outcomes;
+
+            for (ScoreCategory category : CATEGORIES)
+            {
+                rollScores[roll][category.ordinal()] = space.getScore(roll, category);
+            }
+        }
+
+        maxScores = new int[CATEGORIES.length];
+        int max = 0;
+
+        for (ScoreCategory category : CATEGORIES)
+        {
+            maxScores[category.ordinal()] = space.getMaxScore(category);
+            max = Math.max(max, maxScores[category.ordinal()]);
+        }
+
+        maxCategoryScore = max;
+    }
+
+    /**
+     * Computes the distribution of the total score of a full game.
+     */
+    public ScoreDistribution compute()
+    {
+        return compute(GameConstants.ALL_CATEGORIES_OPEN);
+    }
+
+    /**
+     * Computes the distribution of the score still to be made from a scorecard
+     * where only the given categories are open.
+     *
+     * @param openCategories The scorecard mask of open categories.
+     *
+     * @return The exact distribution of the sum of the scores of the remaining
+     *         turns.
+     */
+    public ScoreDistribution compute(int openCategories)
+    {
+        if ((openCategories & ~GameConstants.ALL_CATEGORIES_OPEN) != 0)
+        {
+            throw new IllegalArgumentException("Open categories contain unknown categories.");
+        }
+
+        long start = System.nanoTime();
+
+        // Group every sub-mask of the open categories by the number of bits set
+        int turns = Integer.bitCount(openCategories);
+        int[][] layers = new int[turns + 1][];
+        int[] layerSizes = new int[turns + 1];
+
+        for (int k = 0; k <= turns; k++)
+        {
+            layers[k] = new int[(int) binomial(turns, k)];
+        }
+
+        for (int mask = openCategories; ; mask = (mask - 1) & openCategories)
+        {
+            int k = Integer.bitCount(mask);
+            layers[k][layerSizes[k]++] = mask;
+
+            if (mask == 0)
+            {
+                break;
+            }
+        }
+
+        double[][] pmfs = new double[GameConstants.ALL_CATEGORIES_OPEN + 1][];
+        pmfs[0] = new double[] {1};
+        int states = 1;
+
+        for (int k = 1; k <= turns; k++)
+        {
+            pool.invoke(new LayerTask(layers[k], 0, layers[k].length, pmfs));
+            states += layers[k].length;
+
+            // The previous layer is no longer needed
+            for (int mask : layers[k - 1])
+            {
+                pmfs[mask] = null;
+            }
+        }
+
+        ScoreDistribution distribution = new ScoreDistribution();
+        distribution.strategyName = strategy.getName();
+        distribution.openCategories = openCategories;
+        distribution.probabilities = pmfs[openCategories];
+        distribution.statesEvaluated = states;
+        distribution.elapsedNanos = System.nanoTime() - start;
+
+        return distribution;
+    }
+
+    /**
+     * Computes the PMF of the remaining score for a mask, from the PMFs of the
+     * masks with one category fewer.
+     *
+     * @param mask    The mask to solve.
+     * @param pmfs    The PMFs, indexed by mask.
+     * @param kernels Scratch space, the probability of each score on each
+     *                category as [category][score]. All zeros on entry and
+     *                on exit.
+     * @param random  The Random passed to the strategy.
+     */
+    private double[] solve(int mask, double[][] pmfs, double[][] kernels, Random random)
+    {
+        for (int roll = 0; roll < rolls.length; roll++)
+        {
+            ScoreCategory category = strategy.chooseCategory(rolls[roll], mask, random);
+            int bit = category == null ? 0 : 1 << category.ordinal();
+
+            if ((mask & bit) == 0)
+            {
+                throw new IllegalStateException("Strategy " + strategy.getName() + " chose "
+                        + category + ", which is not an open category.");
+            }
+
+            kernels[category.ordinal()][rollScores[roll][category.ordinal()]] += rollProbabilities[roll];
+        }
+
+        int maxRemaining = 0;
+        for (int open = mask; open != 0; open &= open - 1)
+        {
+            maxRemaining += maxScores[Integer.numberOfTrailingZeros(open)];
+        }
+
+        double[] pmf = new double[maxRemaining + 1];
+
+        for (int open = mask; open != 0; open &= open - 1)
+        {
+            int category = Integer.numberOfTrailingZeros(open);
+            double[] kernel = kernels[category];
+            double[] next = pmfs[mask & ~(1 << category)];
+
+            for (int score = 0; score <= maxScores[category]; score++)
+            {
+                double weight = kernel[score];
+
+                if (weight == 0)
+                {
+                    continue;
+                }
+
+                kernel[score] = 0;
+
+                for (int rest = 0; rest < next.length; rest++)
+                {
+                    pmf[score + rest] += weight * next[rest];
+                }
+            }
+        }
+
+        return pmf;
+    }
+
+    private static long binomial(int n, int k)
+    {
+        long result = 1;
+
+        for (int i = 1; i <= k; i++)
+        {
+            result = result * (n - k + i) / i;
+        }
+
+        return result;
+    }
+
+    /**
+     * Recursively splits a range of masks of the same layer until it is small
+     * enough, then solves each of them.
+     */
+    private class LayerTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] masks;
+        private final int from;
+        private final int to;
+        private final double[][] pmfs;
+
+        LayerTask(int[] masks, int from, int to, double[][] pmfs)
+        {
+            this.masks = masks;
+            this.from = from;
+            this.to = to;
+            this.pmfs = pmfs;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from <= MASKS_PER_TASK)
+            {
+                double[][] kernels = new double[CATEGORIES.length][maxCategoryScore + 1];
+                Random random = new Random(0);
+
+                for (int i = from; i < to; i++)
+                {
+                    pmfs[masks[i]] = solve(masks[i], pmfs, kernels, random);
+                }
+
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new LayerTask(masks, from, middle, pmfs), new LayerTask(masks, middle, to, pmfs));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.diceonayatch.service;
+
+import com.diceonayatch.model.DiceRoll;
+import com.diceonayatch.model.ScoreCategory;
+
+import java.util.Random;
+
+/**
+ * Decides which open ScoreCategory a DiceRoll gets scored on during a game.
+ *
+ * Open categories are passed as a scorecard mask, where bit n is set if the
+ * ScoreCategory with ordinal n has not been used yet. See
+ * GameConstants.ALL_CATEGORIES_OPEN.
+ *
+ * Implementations are shared between threads, so they must either be
+ * stateless or thread safe. Any randomness should come from the Random
+ * passed in, which is owned by the calling thread.
+ *
+ * @author agent 10/19/26.
+ */
+public interface ScoringStrategy
+{
+    /**
+     * Returns a name for the strategy, used when reporting results.
+     */
+    String getName();
+
+    /**
+     * Chooses the category the given roll will be scored on.
+     *
+     * @param diceRoll       The DiceRoll to score.
+     * @param openCategories The scorecard mask of open categories. Never 0.
+     * @param random         A Random owned by the calling thread.
+     *
+     * @return One of the open categories.
+     */
+    ScoreCategory chooseCategory(DiceRoll diceRoll, int openCategories, Random random);
+}
@@ -0,0 +1,654 @@
+package com.diceonayatch.service;
+
+import com.diceonayatch.metadata.GameConstants;
+import com.diceonayatch.model.DiceRoll;
+import com.diceonayatch.model.ScoreCategory;
+import com.diceonayatch.model.TournamentResult;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Plays complete games between ScoringStrategy implementations and reports
+ * how they compare.
+ *
+ * In every game each strategy plays all 16 turns on its own rolls, scoring
+ * each roll on one of its open categories, and the highest total wins.
+ *
+ * Games are split into fixed size batches that run on a work-stealing
+ * ForkJoinPool. Each batch seeds its own Random from the tournament seed and
+ * the batch number, and reuses the same roll objects for all of its games,
+ * so batches never share mutable state and the results for a given seed are
+ * the same no matter how many threads are used.
+ *
+ * Long runs can be checkpointed. A batch's random rolls depend only on the
+ * seed and the batch number, so the position of every random stream is
+ * captured by recording which batches have completed. Finished batches are
+ * merged into a running total as they complete, and the thread that started
+ * the run periodically writes the total and the completed batches to a
+ * compact binary file, while the workers keep playing. A run started with an
+ * existing checkpoint only plays the missing batches, and ends with the same
+ * results as a run that was never interrupted.
+ *
+ * @author agent 10/19/26.
+ */
+public class TournamentRunner
+{
+    // Number of games played by a single task before it stops splitting
+    private static final int GAMES_PER_BATCH = 4096;
+
+    private static final int CHECKPOINT_MAGIC = 0x44595443;
+    private static final int CHECKPOINT_VERSION = 1;
+
+    private final ScoringStrategy[] strategies;
+    private final ForkJoinPool pool;
+    private final RollScorer scorer;
+
+    // Highest possible total score of a game, used to size the histograms
+    private final int maxTotalScore;
+
+    public TournamentRunner(ScoringStrategy... strategies)
+    {
+        this(ForkJoinPool.commonPool(), strategies);
+    }
+
+    public TournamentRunner(ForkJoinPool pool, ScoringStrategy... strategies)
+    {
+        if (pool == null)
+        {
+            throw new IllegalArgumentException("ForkJoinPool cannot be null.");
+        }
+
+        if (strategies == null || strategies.length == 0)
+        {
+            throw new IllegalArgumentException("At least one ScoringStrategy is required.");
+        }
+
+        this.strategies = strategies.clone();
+        this.pool = pool;
+        this.scorer = new DiceRollEvaluator();
+
+        CanonicalRollSpace space = CanonicalRollSpace.getInstance();
+        int max = 0;
+        for (ScoreCategory category : GameConstants.ALL_SCORE_CATEGORIES)
+        {
+            max += space.getMaxScore(category);
+        }
+        this.maxTotalScore = max;
+    }
+
+    /**
+     * Plays the given number of games and collects the results.
+     *
+     * @param games The number of games to play.
+     * @param seed  The seed the random rolls are derived from.
+     *
+     * @return A TournamentResult with the win rates, score distributions and
+     *         throughput of each strategy.
+     */
+    public TournamentResult run(long games, long seed)
+    {
+        if (games < 0)
+        {
+            throw new IllegalArgumentException("Number of games must not be negative.");
+        }
+
+        long start = System.nanoTime();
+        long batches = (games + GAMES_PER_BATCH - 1) / GAMES_PER_BATCH;
+        TournamentResult result = pool.invoke(new BatchTask(0, batches, games, seed, null));
+
+        if (result == null)
+        {
+            result = newResult();
+        }
+
+        result.elapsedNanos = System.nanoTime() - start;
+        result.threads = pool.getParallelism();
+
+        return result;
+    }
+
+    /**
+     * Plays the given number of games, periodically saving the progress to a
+     * checkpoint file. If the file already exists, the run resumes from it.
+     *
+     * The checkpoint is written to a temporary file that is then moved over
+     * the target, so a run that is killed at any point leaves either the old
+     * or the new checkpoint behind. A final checkpoint is written when the run
+     * completes, so resuming a finished run returns its results right away.
+     *
+     * @param games              The number of games to play.
+     * @param seed               The seed the random rolls are derived from.
+     * @param checkpoint         The checkpoint file to resume from and write to.
+     * @param checkpointInterval The time between checkpoints, in milliseconds.
+     *
+     * @return A TournamentResult including the resumed games, and the number
+     *         of checkpoints written and the time it took to write them.
+     *
+     * @throws IOException If the checkpoint cannot be read or written, or it was
+     *                     written by a run with different parameters.
+     */
+    public TournamentResult run(long games, long seed, Path checkpoint, long checkpointInterval)
+        throws IOException
+    {
+        if (games < 0)
+        {
+            throw new IllegalArgumentException("Number of games must not be negative.");
+        }
+
+        if (checkpoint == null)
+        {
+            throw new IllegalArgumentException("Checkpoint file cannot be null.");
+        }
+
+        if (checkpointInterval <= 0)
+        {
+            throw new IllegalArgumentException("Checkpoint interval must be positive.");
+        }
+
+        long start = System.nanoTime();
+        long batches = (games + GAMES_PER_BATCH - 1) / GAMES_PER_BATCH;
+
+        if (batches >= (long) Integer.MAX_VALUE * Long.SIZE)
+        {
+            throw new IllegalArgumentException("Too many games to checkpoint.");
+        }
+
+        Progress progress = new Progress(games, seed, batches);
+        long resumedGames = 0;
+
+        if (Files.exists(checkpoint))
+        {
+            readCheckpoint(checkpoint, progress);
+            resumedGames = progress.total.games;
+        }
+
+        ForkJoinTask<TournamentResult> task = pool.submit(new BatchTask(0, batches, games, seed, progress));
+        int checkpoints = 0;
+        long checkpointNanos = 0;
+        long checkpointBytes = 0;
+
+        while (true)
+        {
+            boolean done;
+
+            try
+            {
+                task.get(checkpointInterval, TimeUnit.MILLISECONDS);
+                done = true;
+            }
+            catch (TimeoutException e)
+            {
+                done = false;
+            }
+            catch (InterruptedException e)
+            {
+                task.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while playing games.", e);
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+            }
+
+            long checkpointStart = System.nanoTime();
+            checkpointBytes = writeCheckpoint(checkpoint, progress);
+            checkpointNanos += System.nanoTime() - checkpointStart;
+            checkpoints++;
+
+            if (done)
+            {
+                break;
+            }
+        }
+
+        TournamentResult result = progress.copyTotal();
+        result.elapsedNanos = System.nanoTime() - start;
+        result.threads = pool.getParallelism();
+        result.resumedGames = resumedGames;
+        result.checkpoints = checkpoints;
+        result.checkpointNanos = checkpointNanos;
+        result.checkpointBytes = checkpointBytes;
+
+        return result;
+    }
+
+    private TournamentResult newResult()
+    {
+        TournamentResult result = new TournamentResult();
+        result.strategyNames = new String[strategies.length];
+        result.wins = new long[strategies.length];
+        result.ties = new long[strategies.length];
+        result.scoreHistograms = new long[strategies.length][maxTotalScore + 1];
+        result.categoryScoreTotals = new long[strategies.length][ScoreCategory.values().length];
+        result.strategyNanos = new long[strategies.length];
+
+        for (int i = 0; i < strategies.length; i++)
+        {
+            result.strategyNames[i] = strategies[i].getName();
+        }
+
+        return result;
+    }
+
+    /**
+     * Adds the counts in partial to total.
+     */
+    private void merge(TournamentResult total, TournamentResult partial)
+    {
+        if (partial == null)
+        {
+            return;
+        }
+
+        total.games += partial.games;
+
+        for (int i = 0; i < strategies.length; i++)
+        {
+            total.wins[i] += partial.wins[i];
+            total.ties[i] += partial.ties[i];
+            total.strategyNanos[i] += partial.strategyNanos[i];
+
+            for (int score = 0; score <= maxTotalScore; score++)
+            {
+                total.scoreHistograms[i][score] += partial.scoreHistograms[i][score];
+            }
+
+            for (int category = 0; category < total.categoryScoreTotals[i].length; category++)
+            {
+                total.categoryScoreTotals[i][category] += partial.categoryScoreTotals[i][category];
+            }
+        }
+    }
+
+    /**
+     * Plays a single batch of games.
+     */
+    private TournamentResult playBatch(long batch, long games, long seed)
+    {
+        TournamentResult result = newResult();
+
+        // Per-batch state, reused for every game in the batch
+        Random random = new Random(mixSeed(seed, batch));
+        DiceRollGenerator generator = new DiceRollGenerator(random);
+        int[] results = new int[GameConstants.TOTAL_NUMBER_OF_DICE];
+        DiceRoll diceRoll = new DiceRoll(results);
+        int[] totals = new int[strategies.length];
+
+        for (long game = 0; game < games; game++)
+        {
+            int best = -1;
+            int bestCount = 0;
+
+            for (int i = 0; i < strategies.length; i++)
+            {
+                long start = System.nanoTime();
+                totals[i] = playGame(strategies[i], generator, random, results, diceRoll,
+                        result.categoryScoreTotals[i]);
+                result.strategyNanos[i] += System.nanoTime() - start;
+                result.scoreHistograms[i][totals[i]]++;
+
+                if (totals[i] > best)
+                {
+                    best = totals[i];
+                    bestCount = 1;
+                }
+                else if (totals[i] == best)
+                {
+                    bestCount++;
+                }
+            }
+
+            for (int i = 0; i < strategies.length; i++)
+            {
+                if (totals[i] == best)
+                {
+                    if (bestCount == 1)
+                    {
+                        result.wins[i]++;
+                    }
+                    else
+                    {
+                        result.ties[i]++;
+                    }
+                }
+            }
+        }
+
+        result.games = games;
+        return result;
+    }
+
+    /**
+     * Plays one full game with a strategy, and returns its total score.
+     */
+    private int playGame(ScoringStrategy strategy, DiceRollGenerator generator, Random random,
+        int[] results, DiceRoll diceRoll, long[] categoryScoreTotals)
+    {
+        int openCategories = GameConstants.ALL_CATEGORIES_OPEN;
+        int total = 0;
+
+        while (openCategories != 0)
+        {
+            // Rolls into the array backing diceRoll
+            generator.roll(results);
+
+            ScoreCategory category = strategy.chooseCategory(diceRoll, openCategories, random);
+            int bit = category == null ? 0 : 1 << category.ordinal();
+
+            if ((openCategories & bit) == 0)
+            {
+                throw new IllegalStateException("Strategy " + strategy.getName() + " chose "
+                        + category + ", which is not an open category.");
+            }
+
+            int score = scorer.score(diceRoll, category);
+            categoryScoreTotals[category.ordinal()] += score;
+            total += score;
+            openCategories &= ~bit;
+        }
+
+        return total;
+    }
+
+    /**
+     * Writes the progress to a temporary file next to the checkpoint, then
+     * moves it over the checkpoint.
+     *
+     * @return The size of the checkpoint, in bytes.
+     */
+    private long writeCheckpoint(Path checkpoint, Progress progress) throws IOException
+    {
+        // Serialized in memory while holding the lock, which only takes a few
+        // microseconds, so workers finishing a batch are barely delayed
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        synchronized (progress)
+        {
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeInt(CHECKPOINT_VERSION);
+            out.writeLong(progress.games);
+            out.writeLong(progress.seed);
+            out.writeInt(GAMES_PER_BATCH);
+            out.writeInt(maxTotalScore);
+            out.writeInt(strategies.length);
+
+            for (ScoringStrategy strategy : strategies)
+            {
+                out.writeUTF(strategy.getName());
+            }
+
+            // Progress cursor, one bit per batch
+            for (long word : progress.completed)
+            {
+                out.writeLong(word);
+            }
+
+            TournamentResult total = progress.total;
+            out.writeLong(total.games);
+
+            for (int i = 0; i < strategies.length; i++)
+            {
+                out.writeLong(total.wins[i]);
+                out.writeLong(total.ties[i]);
+                out.writeLong(total.strategyNanos[i]);
+
+                for (long categoryTotal : total.categoryScoreTotals[i])
+                {
+                    out.writeLong(categoryTotal);
+                }
+
+                // Most total scores never happen, so only the others are written
+                long[] histogram = total.scoreHistograms[i];
+                int used = 0;
+
+                for (long count : histogram)
+                {
+                    used += count == 0 ? 0 : 1;
+                }
+
+                out.writeInt(used);
+
+                for (int score = 0; score < histogram.length; score++)
+                {
+                    if (histogram[score] != 0)
+                    {
+                        out.writeShort(score);
+                        out.writeLong(histogram[score]);
+                    }
+                }
+            }
+        }
+
+        out.close();
+
+        Path parent = checkpoint.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, checkpoint.getFileName().toString(), ".tmp");
+
+        try
+        {
+            Files.write(temp, bytes.toByteArray());
+            Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+
+        return bytes.size();
+    }
+
+    /**
+     * Loads a checkpoint into the progress of a run that has not started yet.
+     */
+    private void readCheckpoint(Path checkpoint, Progress progress) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpoint)));
+
+        try
+        {
+            if (in.readInt() != CHECKPOINT_MAGIC || in.readInt() != CHECKPOINT_VERSION)
+            {
+                throw new IOException(checkpoint + " is not a tournament checkpoint.");
+            }
+
+            boolean sameRun = in.readLong() == progress.games
+                    & in.readLong() == progress.seed
+                    & in.readInt() == GAMES_PER_BATCH
+                    & in.readInt() == maxTotalScore
+                    & in.readInt() == strategies.length;
+
+            for (int i = 0; sameRun && i < strategies.length; i++)
+            {
+                sameRun = in.readUTF().equals(strategies[i].getName());
+            }
+
+            if (!sameRun)
+            {
+                throw new IOException(checkpoint + " was written by a run with different games, seed "
+                        + "or strategies.");
+            }
+
+            for (int word = 0; word < progress.completed.length; word++)
+            {
+                progress.completed[word] = in.readLong();
+            }
+
+            TournamentResult total = progress.total;
+            total.games = in.readLong();
+
+            for (int i = 0; i < strategies.length; i++)
+            {
+                total.wins[i] = in.readLong();
+                total.ties[i] = in.readLong();
+                total.strategyNanos[i] = in.readLong();
+
+                for (int category = 0; category < total.categoryScoreTotals[i].length; category++)
+                {
+                    total.categoryScoreTotals[i][category] = in.readLong();
+                }
+
+                int used = in.readInt();
+
+                for (int j = 0; j < used; j++)
+                {
+                    int score = in.readUnsignedShort();
+
+                    if (score > maxTotalScore)
+                    {
+                        throw new IOException("Invalid score " + score + " in " + checkpoint + ".");
+                    }
+
+                    total.scoreHistograms[i][score] = in.readLong();
+                }
+            }
+
+            progress.resumed = progress.completed.clone();
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Derives a well distributed seed for a batch, so that neighbouring batches
+     * do not get correlated Random sequences (SplitMix64 finalizer).
+     */
+    private static long mixSeed(long seed, long batch)
+    {
+        long z = seed + (batch + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Recursively splits a range of batches until a single batch is left,
+     * then plays it.
+     */
+    private class BatchTask extends RecursiveTask<TournamentResult>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final long fromBatch;
+        private final long toBatch;
+        private final long totalGames;
+        private final long seed;
+
+        // When checkpointing, batches are recorded here instead of returned
+        private final Progress progress;
+
+        BatchTask(long fromBatch, long toBatch, long totalGames, long seed, Progress progress)
+        {
+            this.fromBatch = fromBatch;
+            this.toBatch = toBatch;
+            this.totalGames = totalGames;
+            this.seed = seed;
+            this.progress = progress;
+        }
+
+        @Override
+        protected TournamentResult compute()
+        {
+            if (toBatch - fromBatch <= 1)
+            {
+                if (toBatch == fromBatch)
+                {
+                    return null;
+                }
+
+                if (progress != null && progress.wasResumed(fromBatch))
+                {
+                    return null;
+                }
+
+                long firstGame = fromBatch * GAMES_PER_BATCH;
+                long games = Math.min(GAMES_PER_BATCH, totalGames - firstGame);
+                TournamentResult result = playBatch(fromBatch, games, seed);
+
+                if (progress != null)
+                {
+                    progress.record(fromBatch, result);
+                    return null;
+                }
+
+                return result;
+            }
+
+            long middle = (fromBatch + toBatch) >>> 1;
+            BatchTask left = new BatchTask(fromBatch, middle, totalGames, seed, progress);
+            BatchTask right = new BatchTask(middle, toBatch, totalGames, seed, progress);
+
+            left.fork();
+            TournamentResult result = right.compute();
+            TournamentResult other = left.join();
+
+            if (result == null)
+            {
+                return other;
+            }
+
+            merge(result, other);
+            return result;
+        }
+    }
+
+    /**
+     * Progress of a checkpointed run: the results of the completed batches,
+     * and which batches they are. Guarded by its own lock.
+     */
+    private final class Progress
+    {
+        final long games;
+        final long seed;
+        final TournamentResult total;
+        final long[] completed;
+
+        // Batches completed before the run was resumed, never modified
+        long[] resumed;
+
+        Progress(long games, long seed, long batches)
+        {
+            this.games = games;
+            this.seed = seed;
+            this.total = newResult();
+            this.completed = new long[(int) ((batches + Long.SIZE - 1) / Long.SIZE)];
+            this.resumed = new long[completed.length];
+        }
+
+        boolean wasResumed(long batch)
+        {
+            return (resumed[(int) (batch >>> 6)] & (1L << batch)) != 0;
+        }
+
+        synchronized void record(long batch, TournamentResult result)
+        {
+            merge(total, result);
+            completed[(int) (batch >>> 6)] |= 1L << batch;
+        }
+
+        synchronized TournamentResult copyTotal()
+        {
+            TournamentResult copy = newResult();
+            merge(copy, total);
+            return copy;
+        }
+    }
+}
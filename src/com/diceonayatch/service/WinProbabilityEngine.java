@@ -0,0 +1,895 @@
+package com.diceonayatch.service;
+
+import com.diceonayatch.metadata.GameConstants;
+import com.diceonayatch.model.DiceRoll;
+import com.diceonayatch.model.ScoreCategory;
+import com.diceonayatch.model.ScoreDistribution;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Chooses holds and categories for a player in a two player game so as to
+ * maximize the probability of winning, rather than the expected score.
+ *
+ * A turn is one roll, followed by up to the configured number of rerolls,
+ * after which the roll is scored on an open category. The score delta is
+ * the player's total minus the opponent's total, and a tie counts as half a
+ * win.
+ *
+ * The opponent is modelled by the exact distribution of the score they still
+ * have to make, as computed by a ScoreDistributionEngine for their open
+ * categories. That is an opponent who plays a fixed strategy without
+ * rerolling, like in TournamentRunner. Against an opponent who rerolls it is
+ * an approximation.
+ *
+ * For every opponent scorecard the engine keeps a value table: the win
+ * probability at the start of a turn, for every open-category mask of the
+ * player and every score delta that is still undecided, stored as floats.
+ * Tables are filled backwards, from the masks with fewest open categories,
+ * and masks with the same number of open categories are solved in parallel
+ * on a ForkJoinPool. Only sub-masks of the queried masks are solved, and
+ * tables are memoized across queries, so later decisions in the same
+ * situation only compute the current turn. Each mask is claimed by the first
+ * query that needs it and published once solved, so queries on solved masks
+ * never wait, and concurrent queries only wait for the masks they need that
+ * another one is still solving. The most recently used tables are kept:
+ * - Choosing a category looks up one value per open category.
+ * - Choosing a hold evaluates the rest of the turn for the current delta
+ *   only, with one sparse matrix-vector product per reroll left.
+ *
+ * Solving a mask costs 2 ^ (open categories), so win probabilities are only
+ * used once the player has exactCategories or fewer categories left, which is
+ * when they matter the most. Before that, the engine maximizes the expected
+ * score of the turn, scoring greedily like
+ * DiceRollEvaluator.getHighestScoringCategory.
+ *
+ * This class is thread safe, and a single instance can be shared.
+ *
+ * @author agent 10/19/26.
+ */
+public class WinProbabilityEngine
+{
+    public static final int DEFAULT_EXACT_CATEGORIES = 5;
+
+    // Number of masks solved by a single task before it stops splitting
+    private static final int MASKS_PER_TASK = 4;
+
+    // Value tables kept at most. Every turn of the opponent leads to a new
+    // table, so old ones are dropped, least recently used first
+    private static final int MAX_CACHED_TABLES = 64;
+
+    private static final ScoreCategory[] CATEGORIES = ScoreCategory.values();
+
+    // Win probabilities closer than this are considered equal
+    private static final double VALUE_TOLERANCE = 1e-6;
+
+    private final ScoreDistributionEngine opponentModel;
+    private final int rerolls;
+    private final int exactCategories;
+    private final ForkJoinPool pool;
+
+    private final CanonicalRollSpace space;
+    private final RerollTransitionMatrix matrix;
+    private final DiceRollEvaluator evaluator;
+    private final double[] rollProbabilities;
+    private final int[] rollScores;
+
+    // Highest score that can still be made, by open-category mask
+    private final int[] maxRemaining;
+
+    // Bits needed to store any category score
+    private final int scoreBits;
+
+    // Value tables, by opponent open-category mask. Guarded by its own lock
+    private final LinkedHashMap<Integer, ValueTable> tables;
+
+    public WinProbabilityEngine(ScoreDistributionEngine opponentModel, int rerolls)
+    {
+        this(ForkJoinPool.commonPool(), opponentModel, rerolls, DEFAULT_EXACT_CATEGORIES);
+    }
+
+    /**
+     * @param pool            The pool the value tables are computed on.
+     * @param opponentModel   Computes the distribution of the opponent's
+     *                        remaining score.
+     * @param rerolls         The number of rerolls in a turn.
+     * @param exactCategories The number of open categories from which decisions
+     *                        maximize the win probability.
+     */
+    public WinProbabilityEngine(ForkJoinPool pool, ScoreDistributionEngine opponentModel, int rerolls,
+        int exactCategories)
+    {
+        if (pool == null)
+        {
+            throw new IllegalArgumentException("ForkJoinPool cannot be null.");
+        }
+
+        if (opponentModel == null)
+        {
+            throw new IllegalArgumentException("Opponent model cannot be null.");
+        }
+
+        if (rerolls < 0)
+        {
+            throw new IllegalArgumentException("Number of rerolls must not be negative.");
+        }
+
+        if (exactCategories < 0 || exactCategories > CATEGORIES.length)
+        {
+            throw new IllegalArgumentException("Exact categories must be between 0 and "
+                    + CATEGORIES.length + ".");
+        }
+
+        this.pool = pool;
+        this.opponentModel = opponentModel;
+        this.rerolls = rerolls;
+        this.exactCategories = exactCategories;
+
+        this.matrix = RerollTransitionMatrix.getInstance();
+        this.space = matrix.getSpace();
+        this.evaluator = new DiceRollEvaluator();
+
+        double outcomes = Math.pow(space.getValuesPerDie(), space.getNumberOfDice());
+        rollProbabilities = new double[space.getRollCount()];
+        rollScores = new int[space.getRollCount() * CATEGORIES.length];
+
+        for (int roll = 0; roll < rollProbabilities.length; roll++)
+        {
+            rollProbabilities[roll] = space.getRollPermutations(roll) / outcomes;
+
+            for (ScoreCategory category : CATEGORIES)
+            {
+                rollScores[roll * CATEGORIES.length + category.ordinal()] = space.getScore(roll, category);
+            }
+        }
+
+        int[] maxScores = new int[CATEGORIES.length];
+        for (ScoreCategory category : CATEGORIES)
+        {
+            maxScores[category.ordinal()] = space.getMaxScore(category);
+        }
+
+        int maxScore = 0;
+        for (int score : maxScores)
+        {
+            maxScore = Math.max(maxScore, score);
+        }
+        scoreBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(maxScore));
+
+        maxRemaining = new int[GameConstants.ALL_CATEGORIES_OPEN + 1];
+        for (int mask = 1; mask < maxRemaining.length; mask++)
+        {
+            int lowest = Integer.numberOfTrailingZeros(mask);
+            maxRemaining[mask] = maxRemaining[mask & (mask - 1)] + maxScores[lowest];
+        }
+
+        tables = new LinkedHashMap<Integer, ValueTable>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, ValueTable> eldest)
+            {
+                return size() > MAX_CACHED_TABLES;
+            }
+        };
+    }
+
+    /**
+     * Returns the number of rerolls in a turn.
+     */
+    public int getRerolls()
+    {
+        return rerolls;
+    }
+
+    /**
+     * Returns the number of open categories from which decisions maximize the
+     * win probability.
+     */
+    public int getExactCategories()
+    {
+        return exactCategories;
+    }
+
+    /**
+     * Calculates the probability of winning from the start of a turn, when
+     * playing optimally from then on.
+     *
+     * @param openCategories         The player's scorecard mask of open categories,
+     *                               with at most getExactCategories() open.
+     * @param opponentOpenCategories The opponent's scorecard mask of open categories.
+     * @param scoreDelta             The player's score minus the opponent's score.
+     *
+     * @return The probability of winning, counting ties as half a win.
+     */
+    public double getWinProbability(int openCategories, int opponentOpenCategories, int scoreDelta)
+    {
+        validate(openCategories, opponentOpenCategories);
+
+        if (Integer.bitCount(openCategories) > exactCategories)
+        {
+            throw new IllegalArgumentException("Win probabilities are only computed with "
+                    + exactCategories + " or fewer open categories.");
+        }
+
+        ValueTable table = getTable(opponentOpenCategories);
+        table.solve(openCategories);
+
+        return table.get(openCategories, scoreDelta);
+    }
+
+    /**
+     * Chooses the category to score a roll on.
+     *
+     * @param diceRoll               The final roll of the turn.
+     * @param openCategories         The player's scorecard mask of open categories.
+     * @param opponentOpenCategories The opponent's scorecard mask of open categories.
+     * @param scoreDelta             The player's score minus the opponent's score.
+     *
+     * @return The open category with the highest win probability, or the highest
+     *         scoring one while more than getExactCategories() are open.
+     */
+    public ScoreCategory chooseCategory(DiceRoll diceRoll, int openCategories, int opponentOpenCategories,
+        int scoreDelta)
+    {
+        validate(openCategories, opponentOpenCategories);
+
+        if (openCategories == 0)
+        {
+            throw new IllegalArgumentException("At least one category must be open.");
+        }
+
+        if (Integer.bitCount(openCategories) > exactCategories)
+        {
+            return evaluator.getHighestScoringCategory(diceRoll, openCategories).category;
+        }
+
+        ValueTable table = getTable(opponentOpenCategories);
+        table.solve(openCategories);
+
+        int roll = space.getRollIndex(diceRoll);
+        ScoreCategory best = null;
+        double bestValue = -1;
+        int bestScore = -1;
+
+        for (ScoreCategory category : GameConstants.ALL_SCORE_CATEGORIES)
+        {
+            int bit = 1 << category.ordinal();
+
+            if ((openCategories & bit) == 0)
+            {
+                continue;
+            }
+
+            int score = rollScores[roll * CATEGORIES.length + category.ordinal()];
+            double value = table.get(openCategories & ~bit, scoreDelta + score);
+
+            // Values are stored as floats, so values closer than their precision
+            // are ties, which go to the highest score (e.g. when the game is
+            // already won or lost)
+            boolean tie = Math.abs(value - bestValue) <= VALUE_TOLERANCE;
+
+            if (tie ? score > bestScore : value > bestValue)
+            {
+                bestValue = tie ? Math.max(value, bestValue) : value;
+                bestScore = score;
+                best = category;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Chooses the dice to keep before rerolling.
+     *
+     * @param diceRoll               The current roll.
+     * @param rerollsLeft            The number of rerolls left in the turn, including
+     *                               the one about to be made. Between 1 and
+     *                               getRerolls().
+     * @param openCategories         The player's scorecard mask of open categories.
+     * @param opponentOpenCategories The opponent's scorecard mask of open categories.
+     * @param scoreDelta             The player's score minus the opponent's score.
+     *
+     * @return The values of the dice to keep, in ascending order. Keeping every
+     *         die means the rest of the turn is not worth rerolling.
+     */
+    public int[] chooseHold(DiceRoll diceRoll, int rerollsLeft, int openCategories, int opponentOpenCategories,
+        int scoreDelta)
+    {
+        validate(openCategories, opponentOpenCategories);
+
+        if (openCategories == 0)
+        {
+            throw new IllegalArgumentException("At least one category must be open.");
+        }
+
+        if (rerollsLeft < 1 || rerollsLeft > rerolls)
+        {
+            throw new IllegalArgumentException("Rerolls left must be between 1 and " + rerolls + ".");
+        }
+
+        ValueTable table = null;
+
+        if (Integer.bitCount(openCategories) <= exactCategories)
+        {
+            table = getTable(opponentOpenCategories);
+            table.solve(openCategories);
+        }
+
+        int roll = space.getRollIndex(diceRoll);
+        double[] rollValues = new double[space.getRollCount()];
+        double[] holdValues = new double[space.getMultisetCount()];
+
+        turnValues(table, openCategories, scoreDelta, rerollsLeft - 1, rollValues, holdValues);
+        matrix.multiply(rollValues, holdValues);
+
+        int best = -1;
+        for (int hold : space.getHolds(roll))
+        {
+            if (best < 0 || holdValues[hold] > holdValues[best])
+            {
+                best = hold;
+            }
+        }
+
+        return space.getFaces(best).clone();
+    }
+
+    /**
+     * Returns the number of opponent scorecards value tables are kept for.
+     */
+    public int getCachedTableCount()
+    {
+        synchronized (tables)
+        {
+            return tables.size();
+        }
+    }
+
+    /**
+     * Returns the number of (mask, opponent mask) pairs solved so far.
+     */
+    public int getSolvedMaskCount()
+    {
+        int count = 0;
+
+        synchronized (tables)
+        {
+            for (ValueTable table : tables.values())
+            {
+                count += table.getSolvedCount();
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Drops every value table.
+     */
+    public void clearCache()
+    {
+        synchronized (tables)
+        {
+            tables.clear();
+        }
+    }
+
+    private void validate(int openCategories, int opponentOpenCategories)
+    {
+        if ((openCategories & ~GameConstants.ALL_CATEGORIES_OPEN) != 0
+            || (opponentOpenCategories & ~GameConstants.ALL_CATEGORIES_OPEN) != 0)
+        {
+            throw new IllegalArgumentException("Open categories contain unknown categories.");
+        }
+    }
+
+    private ValueTable getTable(int opponentOpenCategories)
+    {
+        ValueTable table;
+
+        synchronized (tables)
+        {
+            table = tables.get(opponentOpenCategories);
+        }
+
+        if (table == null)
+        {
+            // Computed outside the lock, another thread may do the same, and
+            // the first one to finish wins
+            table = new ValueTable(opponentModel.compute(opponentOpenCategories));
+
+            synchronized (tables)
+            {
+                ValueTable existing = tables.get(opponentOpenCategories);
+
+                if (existing != null)
+                {
+                    table = existing;
+                }
+                else
+                {
+                    tables.put(opponentOpenCategories, table);
+                }
+            }
+        }
+
+        return table;
+    }
+
+    /**
+     * Computes the value of every roll at a given point of a turn, for a single
+     * score delta.
+     *
+     * @param table          The value table to look win probabilities up in, or
+     *                       null to value rolls by their best score instead.
+     * @param mask           The open categories.
+     * @param delta          The score delta at the start of the turn.
+     * @param rerollsLeft    The number of rerolls left after the rolls.
+     * @param rollValues     Output, the value of each roll when holding optimally
+     *                       for the rest of the turn.
+     * @param holdValues     Scratch space, one entry per multiset.
+     *
+     * @return The value of the turn before the first roll, if rerollsLeft is the
+     *         number of rerolls in a turn.
+     */
+    private double turnValues(ValueTable table, int mask, int delta, int rerollsLeft, double[] rollValues,
+        double[] holdValues)
+    {
+        for (int roll = 0; roll < rollValues.length; roll++)
+        {
+            double best = 0;
+            int offset = roll * CATEGORIES.length;
+
+            for (int open = mask; open != 0; open &= open - 1)
+            {
+                int category = Integer.numberOfTrailingZeros(open);
+                int score = rollScores[offset + category];
+                double value = table == null ? score : table.get(mask & ~(1 << category), delta + score);
+                best = Math.max(best, value);
+            }
+
+            rollValues[roll] = best;
+        }
+
+        for (int left = 0; left < rerollsLeft; left++)
+        {
+            matrix.multiply(rollValues, holdValues);
+
+            for (int roll = 0; roll < rollValues.length; roll++)
+            {
+                // Holding every die is one of the options, so this also covers
+                // stopping early
+                double best = 0;
+
+                for (int hold : space.getHolds(roll))
+                {
+                    best = Math.max(best, holdValues[hold]);
+                }
+
+                rollValues[roll] = best;
+            }
+        }
+
+        double expected = 0;
+        for (int roll = 0; roll < rollValues.length; roll++)
+        {
+            expected += rollProbabilities[roll] * rollValues[roll];
+        }
+
+        return expected;
+    }
+
+    /**
+     * Win probabilities against one opponent scorecard. For each mask, only the
+     * deltas whose outcome is still uncertain are stored:
+     * - Below the lowest stored delta, even the highest possible remaining
+     *   score cannot catch the opponent's lowest, so the game is lost.
+     * - Above the highest, the opponent's highest remaining score cannot catch
+     *   up, so the game is won.
+     */
+    private final class ValueTable
+    {
+        final int opponentMin;
+        final int opponentMax;
+
+        // By mask, null until solved. The entry for mask 0 is
+        // P(opponent's remaining score < delta) + P(== delta) / 2, the win
+        // probability once every category is used. Each entry is written once,
+        // by the pool's threads
+        final AtomicReferenceArray<float[]> values;
+
+        // By mask, completed once the mask is solved. Set by the query that
+        // claims the mask, so every mask is solved only once
+        final AtomicReferenceArray<CompletableFuture<float[]>> claims;
+
+        final AtomicInteger solved = new AtomicInteger();
+
+        ValueTable(ScoreDistribution opponent)
+        {
+            double[] probabilities = opponent.probabilities;
+            int min = 0;
+
+            while (min < probabilities.length - 1 && probabilities[min] == 0)
+            {
+                min++;
+            }
+
+            int max = probabilities.length - 1;
+
+            while (max > min && probabilities[max] == 0)
+            {
+                max--;
+            }
+
+            opponentMin = min;
+            opponentMax = max;
+            values = new AtomicReferenceArray<float[]>(GameConstants.ALL_CATEGORIES_OPEN + 1);
+            claims = new AtomicReferenceArray<CompletableFuture<float[]>>(GameConstants.ALL_CATEGORIES_OPEN + 1);
+
+            float[] finalValues = new float[max - min + 1];
+            double below = 0;
+
+            for (int score = min; score <= max; score++)
+            {
+                finalValues[score - min] = (float) (below + probabilities[score] / 2);
+                below += probabilities[score];
+            }
+
+            values.set(0, finalValues);
+        }
+
+        int lowestDelta(int mask)
+        {
+            return opponentMin - maxRemaining[mask];
+        }
+
+        double get(int mask, int delta)
+        {
+            if (delta > opponentMax)
+            {
+                return 1;
+            }
+
+            int lowest = lowestDelta(mask);
+            return delta < lowest ? 0 : values.get(mask)[delta - lowest];
+        }
+
+        int getSolvedCount()
+        {
+            return solved.get();
+        }
+
+        /**
+         * Solves every sub-mask of the given mask that has not been solved yet,
+         * layer by layer. Masks no other query has claimed are claimed and
+         * solved on the pool, then the masks of the layer claimed by other
+         * queries are waited for, as the next layer needs them.
+         */
+        void solve(int mask)
+        {
+            if (values.get(mask) != null)
+            {
+                return;
+            }
+
+            List<List<Integer>> layers = new ArrayList<List<Integer>>();
+            for (int k = 0; k <= Integer.bitCount(mask); k++)
+            {
+                layers.add(new ArrayList<Integer>());
+            }
+
+            for (int sub = mask; sub != 0; sub = (sub - 1) & mask)
+            {
+                if (values.get(sub) == null)
+                {
+                    layers.get(Integer.bitCount(sub)).add(sub);
+                }
+            }
+
+            for (List<Integer> layer : layers)
+            {
+                List<Integer> claimed = new ArrayList<Integer>();
+                List<CompletableFuture<float[]>> pending = new ArrayList<CompletableFuture<float[]>>();
+
+                for (int sub : layer)
+                {
+                    CompletableFuture<float[]> claim = claims.get(sub);
+
+                    // Another query may claim the mask, or release a failed claim, in between
+                    while (claim == null && !claims.compareAndSet(sub, null, new CompletableFuture<float[]>()))
+                    {
+                        claim = claims.get(sub);
+                    }
+
+                    if (claim == null)
+                    {
+                        claimed.add(sub);
+                    }
+                    else
+                    {
+                        pending.add(claim);
+                    }
+                }
+
+                if (!claimed.isEmpty())
+                {
+                    int[] masks = new int[claimed.size()];
+                    for (int i = 0; i < masks.length; i++)
+                    {
+                        masks[i] = claimed.get(i);
+                    }
+
+                    try
+                    {
+                        pool.invoke(new LayerTask(this, masks, 0, masks.length));
+                    }
+                    catch (RuntimeException | Error e)
+                    {
+                        // Release the unsolved masks, so a later query retries
+                        // them, and fail the queries waiting for them
+                        for (int sub : masks)
+                        {
+                            CompletableFuture<float[]> claim = claims.get(sub);
+
+                            if (!claim.isDone())
+                            {
+                                claims.set(sub, null);
+                                claim.completeExceptionally(e);
+                            }
+                        }
+
+                        throw e;
+                    }
+
+                    solved.addAndGet(masks.length);
+                }
+
+                for (CompletableFuture<float[]> claim : pending)
+                {
+                    claim.join();
+                }
+            }
+        }
+
+        /**
+         * Computes the win probability at the start of a turn for every stored
+         * delta of a mask at once. Values are kept as one row of deltas per roll
+         * (or group of rolls), so every step is a loop over contiguous deltas.
+         *
+         * @param mask    The mask to solve. Every mask with one category fewer
+         *                must be solved already.
+         * @param scratch Scratch space for the rerolls, see newScratch.
+         */
+        float[] solveMask(int mask, double[][] scratch)
+        {
+            int lowest = lowestDelta(mask);
+            int width = opponentMax - lowest + 1;
+            int rolls = rollProbabilities.length;
+
+            // Rolls that score the same on every open category are worth the
+            // same at the end of the turn, so they are only valued once
+            int[] groupOf = new int[rolls];
+            int[] groupRoll = new int[rolls];
+            double[] groupProbability = new double[rolls];
+            int groups = groupRolls(mask, groupOf, groupRoll, groupProbability);
+
+            double[] groupValues = new double[groups * width];
+
+            for (int group = 0; group < groups; group++)
+            {
+                int offset = groupRoll[group] * CATEGORIES.length;
+
+                for (int open = mask; open != 0; open &= open - 1)
+                {
+                    int category = Integer.numberOfTrailingZeros(open);
+                    int score = rollScores[offset + category];
+                    maxInto(groupValues, group * width, width, mask & ~(1 << category), lowest + score);
+                }
+            }
+
+            double[] turn = new double[width];
+
+            if (rerolls == 0)
+            {
+                for (int group = 0; group < groups; group++)
+                {
+                    addScaled(turn, groupValues, group * width, width, groupProbability[group]);
+                }
+            }
+            else
+            {
+                double[] rollValues = scratch[0];
+                double[] holdValues = scratch[1];
+
+                for (int roll = 0; roll < rolls; roll++)
+                {
+                    System.arraycopy(groupValues, groupOf[roll] * width, rollValues, roll * width, width);
+                }
+
+                for (int left = 0; left < rerolls; left++)
+                {
+                    matrix.multiply(rollValues, holdValues, width);
+
+                    for (int roll = 0; roll < rolls; roll++)
+                    {
+                        // Holding every die is one of the options, so this
+                        // also covers stopping early
+                        int target = roll * width;
+
+                        for (int hold : space.getHolds(roll))
+                        {
+                            int source = hold * width;
+
+                            for (int i = 0; i < width; i++)
+                            {
+                                rollValues[target + i] = Math.max(rollValues[target + i], holdValues[source + i]);
+                            }
+                        }
+                    }
+                }
+
+                for (int roll = 0; roll < rolls; roll++)
+                {
+                    addScaled(turn, rollValues, roll * width, width, rollProbabilities[roll]);
+                }
+            }
+
+            float[] maskValues = new float[width];
+            for (int i = 0; i < width; i++)
+            {
+                maskValues[i] = (float) turn[i];
+            }
+
+            return maskValues;
+        }
+
+        /**
+         * Sets target[offset + i] to the max of itself and the value of the
+         * child mask at delta base + i, for i in [0, width).
+         */
+        private void maxInto(double[] target, int offset, int width, int child, int base)
+        {
+            float[] childValues = values.get(child);
+            int childLowest = lowestDelta(child);
+
+            // Deltas above opponentMax always win, and below childLowest never do
+            int won = Math.max(0, Math.min(width, opponentMax - base + 1));
+            int from = Math.min(won, Math.max(0, childLowest - base));
+
+            for (int i = from; i < won; i++)
+            {
+                target[offset + i] = Math.max(target[offset + i], childValues[base + i - childLowest]);
+            }
+
+            for (int i = won; i < width; i++)
+            {
+                target[offset + i] = 1;
+            }
+        }
+    }
+
+    /**
+     * Groups the rolls that have the same score on every open category.
+     *
+     * @return The number of groups.
+     */
+    private int groupRolls(int mask, int[] groupOf, int[] groupRoll, double[] groupProbability)
+    {
+        int rolls = rollProbabilities.length;
+        int groups = 0;
+
+        // Group by the scores packed into a long, or not at all if they do not fit
+        if (Integer.bitCount(mask) * scoreBits > Long.SIZE - 1)
+        {
+            for (int roll = 0; roll < rolls; roll++)
+            {
+                groupOf[roll] = roll;
+                groupRoll[roll] = roll;
+                groupProbability[roll] = rollProbabilities[roll];
+            }
+
+            return rolls;
+        }
+
+        HashMap<Long, Integer> keys = new HashMap<Long, Integer>();
+
+        for (int roll = 0; roll < rolls; roll++)
+        {
+            long key = 0;
+
+            for (int open = mask; open != 0; open &= open - 1)
+            {
+                key = (key << scoreBits) | rollScores[roll * CATEGORIES.length + Integer.numberOfTrailingZeros(open)];
+            }
+
+            Integer group = keys.get(key);
+
+            if (group == null)
+            {
+                group = groups++;
+                keys.put(key, group);
+                groupRoll[group] = roll;
+            }
+
+            groupOf[roll] = group;
+            groupProbability[group] += rollProbabilities[roll];
+        }
+
+        return groups;
+    }
+
+    private static void addScaled(double[] target, double[] source, int offset, int width, double scale)
+    {
+        for (int i = 0; i < width; i++)
+        {
+            target[i] += scale * source[offset + i];
+        }
+    }
+
+    /**
+     * Recursively splits a range of masks with the same number of open
+     * categories until it is small enough, then solves each of them.
+     */
+    private class LayerTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final ValueTable table;
+        private final int[] masks;
+        private final int from;
+        private final int to;
+
+        LayerTask(ValueTable table, int[] masks, int from, int to)
+        {
+            this.table = table;
+            this.masks = masks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from <= MASKS_PER_TASK)
+            {
+                // Sized for the widest mask of the range
+                int width = 0;
+                for (int i = from; i < to; i++)
+                {
+                    width = Math.max(width, table.opponentMax - table.lowestDelta(masks[i]) + 1);
+                }
+
+                double[][] scratch = new double[2][];
+                if (rerolls > 0)
+                {
+                    scratch[0] = new double[space.getRollCount() * width];
+                    scratch[1] = new double[space.getMultisetCount() * width];
+                }
+
+                for (int i = from; i < to; i++)
+                {
+                    float[] maskValues = table.solveMask(masks[i], scratch);
+                    table.values.set(masks[i], maskValues);
+                    table.claims.get(masks[i]).complete(maskValues);
+                }
+
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new LayerTask(table, masks, from, middle), new LayerTask(table, masks, middle, to));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.diceonayatch.utils;
+
+import com.diceonayatch.metadata.GameConstants;
+import com.diceonayatch.model.DiceRoll;
+import com.diceonayatch.model.EvaluationResult;
+import com.diceonayatch.model.ScoreCategory;
+import com.diceonayatch.service.BitSlicedEvaluator;
+import com.diceonayatch.service.DiceRollEvaluator;
+
+import java.util.Random;
+
+/**
+ * Checks BitSlicedEvaluator against DiceRollEvaluator over every possible
+ * ordered roll, then compares how many rolls per nanosecond each one scores.
+ *
+ * Usage: BitSlicedBenchmark [rolls] [rounds]
+ *
+ * @author agent 10/19/26.
+ */
+public class BitSlicedBenchmark
+{
+    public static void main(String[] args)
+    {
+        int rolls = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 20;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        int mismatches = verifyAllRolls();
+        System.out.printf("Full roll space checked, mismatches: %d%n", mismatches);
+
+        if (mismatches > 0)
+        {
+            return;
+        }
+
+        int dice = GameConstants.TOTAL_NUMBER_OF_DICE;
+        int[] results = new int[rolls * dice];
+        Random random = new Random(42);
+
+        for (int i = 0; i < results.length; i++)
+        {
+            results[i] = random.nextInt(GameConstants.VALUES_PER_DIE) + 1;
+        }
+
+        BitSlicedEvaluator bitSliced = new BitSlicedEvaluator();
+        DiceRollEvaluator evaluator = new DiceRollEvaluator();
+        int[] bestCategories = new int[rolls];
+        int[] bestScores = new int[rolls];
+        long checksum = 0;
+
+        for (int round = 0; round < rounds; round++)
+        {
+            long start = System.nanoTime();
+            bitSliced.evaluateAll(results, rolls, bestCategories, bestScores);
+            long bitSlicedNanos = System.nanoTime() - start;
+
+            for (int i = 0; i < rolls; i++)
+            {
+                checksum += bestScores[i];
+            }
+
+            start = System.nanoTime();
+            for (int i = 0; i < rolls; i++)
+            {
+                int[] faces = new int[dice];
+                System.arraycopy(results, i * dice, faces, 0, dice);
+                checksum -= evaluator.getHighestScoringCategory(new DiceRoll(faces)).score;
+            }
+            long evaluatorNanos = System.nanoTime() - start;
+
+            System.out.printf("Round %d  Bit-sliced: %.4f rolls/ns  DiceRollEvaluator: %.4f rolls/ns  Speedup: %.1fx%n",
+                    round + 1, (double) rolls / bitSlicedNanos, (double) rolls / evaluatorNanos,
+                    (double) evaluatorNanos / bitSlicedNanos);
+        }
+
+        // Both evaluators add up to the same total, so this must be 0
+        System.out.println("Checksum: " + checksum);
+    }
+
+    /**
+     * Scores every ordered roll on every category with both evaluators.
+     *
+     * @return The number of rolls where any category score, the best category or
+     *         the best score differ.
+     */
+    public static int verifyAllRolls()
+    {
+        int dice = GameConstants.TOTAL_NUMBER_OF_DICE;
+        int faces = GameConstants.VALUES_PER_DIE;
+        int total = 1;
+
+        for (int d = 0; d < dice; d++)
+        {
+            total *= faces;
+        }
+
+        int block = BitSlicedEvaluator.BLOCK_SIZE;
+        int categoryCount = ScoreCategory.values().length;
+
+        BitSlicedEvaluator bitSliced = new BitSlicedEvaluator();
+        DiceRollEvaluator evaluator = new DiceRollEvaluator();
+        int[] results = new int[block * dice];
+        int[] categoryScores = new int[categoryCount * block];
+        int[] bestCategories = new int[block];
+        int[] bestScores = new int[block];
+        int mismatches = 0;
+
+        for (int first = 0; first < total; first += block)
+        {
+            int count = Math.min(block, total - first);
+
+            for (int i = 0; i < count; i++)
+            {
+                int code = first + i;
+
+                for (int d = 0; d < dice; d++)
+                {
+                    results[i * dice + d] = code % faces + 1;
+                    code /= faces;
+                }
+            }
+
+            bitSliced.evaluateBlock(results, 0, count, categoryScores, bestCategories, bestScores);
+
+            for (int i = 0; i < count; i++)
+            {
+                int[] roll = new int[dice];
+                System.arraycopy(results, i * dice, roll, 0, dice);
+                DiceRoll diceRoll = new DiceRoll(roll);
+
+                EvaluationResult best = evaluator.getHighestScoringCategory(diceRoll);
+                boolean match = best.category.ordinal() == bestCategories[i] && best.score == bestScores[i];
+
+                for (ScoreCategory category : ScoreCategory.values())
+                {
+                    match &= evaluator.score(diceRoll, category) == categoryScores[category.ordinal() * block + i];
+                }
+
+                if (!match)
+                {
+                    mismatches++;
+                }
+            }
+        }
+
+        return mismatches;
+    }
+}
@@ -0,0 +1,171 @@
+package com.diceonayatch.utils;
+
+import com.diceonayatch.metadata.GameConstants;
+import com.diceonayatch.model.DiceRoll;
+import com.diceonayatch.model.ScoreCategory;
+import com.diceonayatch.service.DiceRollEvaluator;
+import com.diceonayatch.service.DiceRollGenerator;
+import com.diceonayatch.service.GreedyScoringStrategy;
+import com.diceonayatch.service.ScoreDistributionEngine;
+import com.diceonayatch.service.WinProbabilityEngine;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Plays two player games against an opponent that maximizes the expected
+ * score of each turn, once with a WinProbabilityEngine player and once with a
+ * player that plays like the opponent, on the same rolls. Reports both win
+ * rates, and the latency of the win probability decisions.
+ *
+ * Games are played without rerolls first, where the opponent scores greedily
+ * like in TournamentRunner and the engine's model of the opponent is exact,
+ * then with the given number of rerolls for both players. The engine still
+ * models the opponent as not rerolling, so there it underestimates them.
+ * Rerolls make every solved mask much more expensive, so fewer exact
+ * categories keep the run short.
+ *
+ * Usage: HeadToHeadBenchmark [games] [rerolls] [exactCategories]
+ * Defaults to 2000 games, 2 rerolls and 3 exact categories.
+ *
+ * @author agent 10/19/26.
+ */
+public class HeadToHeadBenchmark
+{
+    public static void main(String[] args)
+    {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int rerolls = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int exactCategories = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        ScoreDistributionEngine opponentModel = new ScoreDistributionEngine(new GreedyScoringStrategy());
+
+        System.out.printf("Games: %d  Exact categories: %d%n", games, exactCategories);
+        run(opponentModel, games, 0, exactCategories);
+
+        if (rerolls > 0)
+        {
+            run(opponentModel, games, rerolls, exactCategories);
+        }
+    }
+
+    private static void run(ScoreDistributionEngine opponentModel, int games, int rerolls, int exactCategories)
+    {
+        WinProbabilityEngine winEngine = new WinProbabilityEngine(ForkJoinPool.commonPool(),
+                opponentModel, rerolls, exactCategories);
+        WinProbabilityEngine scoreEngine = new WinProbabilityEngine(ForkJoinPool.commonPool(),
+                opponentModel, rerolls, 0);
+
+        long[] latencies = new long[games * GameConstants.ALL_SCORE_CATEGORIES.length * (rerolls + 1)];
+        int[] decisions = new int[1];
+
+        long start = System.nanoTime();
+        double winRate = play(winEngine, scoreEngine, games, latencies, decisions);
+        long winNanos = System.nanoTime() - start;
+
+        double scoreRate = play(scoreEngine, scoreEngine, games, null, null);
+
+        System.out.printf("Rerolls: %d%n", rerolls);
+        System.out.printf("  Max expected score player wins: %6.2f%%%n", 100 * scoreRate);
+        System.out.printf("  Max win probability player wins: %6.2f%%  (%.2f s, %d opponent tables, %d masks solved)%n",
+                100 * winRate, winNanos / 1e9, winEngine.getCachedTableCount(), winEngine.getSolvedMaskCount());
+
+        long[] sorted = Arrays.copyOf(latencies, decisions[0]);
+        Arrays.sort(sorted);
+
+        if (sorted.length > 0)
+        {
+            System.out.printf("  Win probability decisions: %d  p50: %.1f us  p99: %.1f ms  max: %.1f ms%n",
+                    sorted.length, sorted[sorted.length / 2] / 1e3, sorted[(int) (sorted.length * 0.99)] / 1e6,
+                    sorted[sorted.length - 1] / 1e6);
+        }
+    }
+
+    /**
+     * Plays the games, the player moving first, and returns the fraction won,
+     * counting ties as half a win.
+     */
+    private static double play(WinProbabilityEngine player, WinProbabilityEngine opponent, int games,
+        long[] latencies, int[] decisions)
+    {
+        DiceRollEvaluator evaluator = new DiceRollEvaluator();
+        double won = 0;
+
+        for (int game = 0; game < games; game++)
+        {
+            // Separate streams, so both players see the same rolls no matter
+            // how many times the other one rerolls
+            Random playerRandom = new Random(game * 2L);
+            Random opponentRandom = new Random(game * 2L + 1);
+            DiceRollGenerator playerDice = new DiceRollGenerator(playerRandom);
+            DiceRollGenerator opponentDice = new DiceRollGenerator(opponentRandom);
+
+            int playerOpen = GameConstants.ALL_CATEGORIES_OPEN;
+            int opponentOpen = GameConstants.ALL_CATEGORIES_OPEN;
+            int delta = 0;
+
+            while (playerOpen != 0)
+            {
+                DiceRoll diceRoll = playTurn(player, playerDice.roll(), playerRandom, playerOpen, opponentOpen,
+                        delta, latencies, decisions);
+
+                long t0 = System.nanoTime();
+                ScoreCategory category = player.chooseCategory(diceRoll, playerOpen, opponentOpen, delta);
+                record(player, playerOpen, latencies, decisions, System.nanoTime() - t0);
+
+                delta += evaluator.score(diceRoll, category);
+                playerOpen &= ~(1 << category.ordinal());
+
+                // The opponent maximizes its expected score, so the delta and
+                // the player's scorecard do not matter to it
+                DiceRoll opponentRoll = playTurn(opponent, opponentDice.roll(), opponentRandom, opponentOpen,
+                        playerOpen, -delta, null, null);
+                ScoreCategory opponentCategory = opponent.chooseCategory(opponentRoll, opponentOpen, playerOpen,
+                        -delta);
+                delta -= evaluator.score(opponentRoll, opponentCategory);
+                opponentOpen &= ~(1 << opponentCategory.ordinal());
+            }
+
+            won += delta > 0 ? 1 : delta == 0 ? 0.5 : 0;
+        }
+
+        return won / games;
+    }
+
+    /**
+     * Rerolls as chosen by the engine, and returns the final roll of the turn.
+     */
+    private static DiceRoll playTurn(WinProbabilityEngine engine, DiceRoll diceRoll, Random random,
+        int openCategories, int opponentOpenCategories, int delta, long[] latencies, int[] decisions)
+    {
+        for (int left = engine.getRerolls(); left > 0; left--)
+        {
+            long t0 = System.nanoTime();
+            int[] hold = engine.chooseHold(diceRoll, left, openCategories, opponentOpenCategories, delta);
+            record(engine, openCategories, latencies, decisions, System.nanoTime() - t0);
+
+            int[] results = Arrays.copyOf(hold, GameConstants.TOTAL_NUMBER_OF_DICE);
+            for (int i = hold.length; i < results.length; i++)
+            {
+                results[i] = random.nextInt(GameConstants.VALUES_PER_DIE) + 1;
+            }
+
+            diceRoll = new DiceRoll(results);
+        }
+
+        return diceRoll;
+    }
+
+    /**
+     * Records the latency of a decision based on win probabilities.
+     */
+    private static void record(WinProbabilityEngine engine, int openCategories, long[] latencies,
+        int[] decisions, long nanos)
+    {
+        if (latencies != null && Integer.bitCount(openCategories) <= engine.getExactCategories())
+        {
+            latencies[decisions[0]++] = nanos;
+        }
+    }
+}
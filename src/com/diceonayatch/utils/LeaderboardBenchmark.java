@@ -0,0 +1,189 @@
+package com.diceonayatch.utils;
+
+import com.diceonayatch.metadata.GameConstants;
+import com.diceonayatch.model.DiceRoll;
+import com.diceonayatch.model.EvaluationResult;
+import com.diceonayatch.model.ScoreCategory;
+import com.diceonayatch.service.DiceRollEvaluator;
+import com.diceonayatch.service.DiceRollGenerator;
+import com.diceonayatch.service.Leaderboard;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures Leaderboard submission throughput and query latency while many
+ * threads submit scores at the same time. Submissions are the results of real
+ * games played with the greedy strategy, so totals and category hits have the
+ * same shape as in play.
+ *
+ * Usage: LeaderboardBenchmark [writerThreads] [seconds] [players]
+ *
+ * @author agent 10/19/26.
+ */
+public class LeaderboardBenchmark
+{
+    // Pre-generated games, shared by every writer, so the benchmark measures
+    // the leaderboard and not the games
+    private static final int GAMES = 1 << 16;
+
+    public static void main(String[] args) throws Exception
+    {
+        int writers = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() * 2;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int playerCount = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+
+        final Leaderboard leaderboard = new Leaderboard();
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final LongAdder submissions = new LongAdder();
+
+        final String[] players = new String[playerCount];
+        for (int i = 0; i < playerCount; i++)
+        {
+            players[i] = "player-" + i;
+        }
+
+        final int[] totals = new int[GAMES];
+        final int[][] scores = new int[GAMES][];
+        playGreedyGames(totals, scores, new Random(0));
+
+        Thread[] threads = new Thread[writers];
+        for (int w = 0; w < writers; w++)
+        {
+            final Random random = new Random(w);
+            threads[w] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    // Each writer submits the games in its own random order and
+                    // for its own random players
+                    String[] ids = new String[GAMES];
+                    int[] games = new int[GAMES];
+
+                    for (int i = 0; i < GAMES; i++)
+                    {
+                        ids[i] = players[random.nextInt(players.length)];
+                        games[i] = random.nextInt(GAMES);
+                    }
+
+                    int i = 0;
+                    while (running.get())
+                    {
+                        leaderboard.submit(ids[i], totals[games[i]], scores[games[i]]);
+                        submissions.increment();
+                        i = (i + 1) & (GAMES - 1);
+                    }
+                }
+            });
+        }
+
+        for (Thread thread : threads)
+        {
+            thread.start();
+        }
+
+        // Query from the main thread while the writers run
+        Random random = new Random(-1);
+        long[] topLatencies = new long[1 << 20];
+        long[] rankLatencies = new long[1 << 20];
+        int queries = 0;
+        long snapshotNanos = -1;
+
+        Path snapshot = Files.createTempFile("leaderboard", ".bin");
+        long start = System.nanoTime();
+        long end = start + seconds * 1000000000L;
+
+        for (long now = start; now < end; now = System.nanoTime())
+        {
+            // Snapshot half way through, while writers keep going
+            if (snapshotNanos < 0 && now - start > (end - start) / 2)
+            {
+                leaderboard.snapshot(snapshot);
+                snapshotNanos = System.nanoTime() - now;
+            }
+
+            // Once there is no room for more latencies, only the writers run
+            if (queries == topLatencies.length)
+            {
+                Thread.sleep(1);
+                continue;
+            }
+
+            long t0 = System.nanoTime();
+            leaderboard.getTop(10);
+            long t1 = System.nanoTime();
+            leaderboard.getRank(players[random.nextInt(players.length)]);
+            long t2 = System.nanoTime();
+
+            topLatencies[queries] = t1 - t0;
+            rankLatencies[queries] = t2 - t1;
+            queries++;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        running.set(false);
+
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        System.out.printf("Writers: %d  Players: %d  Duration: %.2f s%n", writers, leaderboard.getPlayerCount(),
+                elapsed / 1e9);
+        System.out.printf("Submissions: %d (%.0f/s)%n", submissions.sum(), submissions.sum() / (elapsed / 1e9));
+        printLatencies("Top 10", topLatencies, queries);
+        printLatencies("Rank", rankLatencies, queries);
+        System.out.printf("Snapshot: %.2f ms, %d bytes%n", snapshotNanos / 1e6, Files.size(snapshot));
+        System.out.println("Top 3: " + leaderboard.getTop(3));
+        System.out.println("Most ALL_SAME hits: " + leaderboard.getCategoryRecord(ScoreCategory.ALL_SAME));
+
+        Files.deleteIfExists(snapshot);
+    }
+
+    /**
+     * Plays full games with the greedy strategy, recording the total and the
+     * score on each category of every game.
+     */
+    private static void playGreedyGames(int[] totals, int[][] scores, Random random)
+    {
+        DiceRollGenerator generator = new DiceRollGenerator(random);
+        DiceRollEvaluator evaluator = new DiceRollEvaluator();
+
+        for (int game = 0; game < totals.length; game++)
+        {
+            scores[game] = new int[ScoreCategory.values().length];
+            int openCategories = GameConstants.ALL_CATEGORIES_OPEN;
+
+            while (openCategories != 0)
+            {
+                DiceRoll diceRoll = generator.roll();
+                EvaluationResult result = evaluator.getHighestScoringCategory(diceRoll, openCategories);
+
+                scores[game][result.category.ordinal()] = result.score;
+                totals[game] += result.score;
+                openCategories &= ~(1 << result.category.ordinal());
+            }
+        }
+    }
+
+    private static void printLatencies(String name, long[] latencies, int count)
+    {
+        if (count == 0)
+        {
+            System.out.printf("%-7s queries: 0%n", name);
+            return;
+        }
+
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+
+        String format = "%-7s queries: %d  p50: %.1f us  p99: %.1f us  max: %.1f us%n";
+        System.out.printf(format, name, count, sorted[count / 2] / 1e3, sorted[(int) (count * 0.99)] / 1e3,
+                sorted[count - 1] / 1e3);
+    }
+}
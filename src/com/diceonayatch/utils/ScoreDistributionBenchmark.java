@@ -0,0 +1,62 @@
+package com.diceonayatch.utils;
+
+import com.diceonayatch.model.ScoreDistribution;
+import com.diceonayatch.model.TournamentResult;
+import com.diceonayatch.service.GreedyScoringStrategy;
+import com.diceonayatch.service.ScoreDistributionEngine;
+import com.diceonayatch.service.TournamentRunner;
+
+/**
+ * Computes the exact final score distribution of the greedy strategy, and
+ * cross-checks it against the scores of simulated games.
+ *
+ * The check uses the Kolmogorov-Smirnov statistic, the largest difference
+ * between the exact and the simulated cumulative distributions, which should
+ * stay below 1.36 / sqrt(games) 95% of the time if the exact distribution is
+ * right.
+ *
+ * Usage: ScoreDistributionBenchmark [games] [seed]
+ *
+ * @author agent 10/19/26.
+ */
+public class ScoreDistributionBenchmark
+{
+    public static void main(String[] args)
+    {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 1000000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+
+        GreedyScoringStrategy greedy = new GreedyScoringStrategy();
+        ScoreDistribution exact = new ScoreDistributionEngine(greedy).compute();
+        System.out.print("Exact      " + exact);
+
+        TournamentResult simulated = new TournamentRunner(greedy).run(games, seed);
+        long[] histogram = simulated.scoreHistograms[0];
+
+        System.out.printf("Simulated  %s: %d games in %.2f s. Mean: %.4f  StdDev: %.4f  "
+                        + "P1/P10/P50/P90/P99: %d/%d/%d/%d/%d%n",
+                simulated.strategyNames[0], games, simulated.elapsedNanos / 1e9, simulated.getMeanScore(0),
+                simulated.getScoreStandardDeviation(0), simulated.getScorePercentile(0, 0.01),
+                simulated.getScorePercentile(0, 0.1), simulated.getScorePercentile(0, 0.5),
+                simulated.getScorePercentile(0, 0.9), simulated.getScorePercentile(0, 0.99));
+
+        double exactCumulative = 0;
+        double simulatedCumulative = 0;
+        double maxDifference = 0;
+        double totalProbability = 0;
+        int length = Math.max(histogram.length, exact.probabilities.length);
+
+        for (int score = 0; score < length; score++)
+        {
+            exactCumulative += exact.getProbability(score);
+            simulatedCumulative += score < histogram.length ? (double) histogram[score] / games : 0;
+            maxDifference = Math.max(maxDifference, Math.abs(exactCumulative - simulatedCumulative));
+            totalProbability += exact.getProbability(score);
+        }
+
+        double critical = 1.36 / Math.sqrt(games);
+        System.out.printf("Total probability: %.12f%n", totalProbability);
+        System.out.printf("Kolmogorov-Smirnov: %.6f (critical value at 95%%: %.6f) %s%n", maxDifference, critical,
+                maxDifference < critical ? "PASSED" : "--FAILED--");
+    }
+}
@@ -3,8 +3,41 @@ package com.diceonayatch.utils;
 import com.diceonayatch.metadata.GameConstants;
 import com.diceonayatch.model.DiceRoll;
 import com.diceonayatch.model.EvaluationResult;
+import com.diceonayatch.model.ImmutableDiceRoll;
+import com.diceonayatch.model.LeaderboardEntry;
 import com.diceonayatch.model.ScoreCategory;
+import com.diceonayatch.model.ScoreDistribution;
+import com.diceonayatch.model.SimulationReport;
+import com.diceonayatch.model.TournamentResult;
+import com.diceonayatch.service.AdaptiveMonteCarloSimulator;
+import com.diceonayatch.service.CanonicalRollSpace;
 import com.diceonayatch.service.DiceRollEvaluator;
+import com.diceonayatch.service.DiceRollGenerator;
+import com.diceonayatch.service.EvaluationProcessor;
+import com.diceonayatch.service.GreedyScoringStrategy;
+import com.diceonayatch.service.Leaderboard;
+import com.diceonayatch.service.RandomScoringStrategy;
+import com.diceonayatch.service.RerollOddsEngine;
+import com.diceonayatch.service.RollAnalyticsStore;
+import com.diceonayatch.service.ScoreDistributionEngine;
+import com.diceonayatch.service.TournamentRunner;
+import com.diceonayatch.service.WinProbabilityEngine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Utils class to set up DiceRoll scenarios and test behavior.
@@ -189,9 +222,885 @@ public class TestUtils
         result = evaluator.getHighestScoringCategory(dr);
         verifyHighestScoringCategory(dr, ScoreCategory.THREE_OF_A_KIND, result.category, result.score);
 
+        // Scenario: with ALL_SAME already used, the best open category for the following is ONES,
+        // as CHANCE also scores 5 but comes later in the GameConstants.ALL_SCORE_CATEGORIES array
+        dr = new DiceRoll(new int[] {1,1,1,1,1});
+        int openCategories = GameConstants.ALL_CATEGORIES_OPEN & ~(1 << ScoreCategory.ALL_SAME.ordinal());
+        result = evaluator.getHighestScoringCategory(dr, openCategories);
+        verifyHighestScoringCategory(dr, ScoreCategory.ONES, result.category, result.score);
+
+        // Scenario: only open categories are considered, even if they score 0
+        dr = new DiceRoll(new int[] {1,2,1,8,8});
+        openCategories = 1 << ScoreCategory.STRAIGHT_LARGE.ordinal();
+        result = evaluator.getHighestScoringCategory(dr, openCategories);
+        verifyHighestScoringCategory(dr, ScoreCategory.STRAIGHT_LARGE, result.category, result.score);
+
+        // Scenario: categories are searched from the highest to the lowest max score. For the
+        // following only ALL_SAME, EIGHTS and STRAIGHT_LARGE are evaluated: ALL_DIFFERENT and
+        // CHANCE can at most tie the 40 of STRAIGHT_LARGE, which comes first, and no other
+        // category can score 40, so the other 13 evaluations are skipped
+        dr = new DiceRoll(new int[] {1,2,3,4,5});
+        result = evaluator.getHighestScoringCategory(dr, GameConstants.ALL_CATEGORIES_OPEN);
+        verifyHighestScoringCategory(dr, ScoreCategory.STRAIGHT_LARGE, result.category, result.score);
+        verifyEquals("Skipped evaluations for " + dr, 13, result.prunedEvaluations);
+
+        // Scenario: the pruned search returns the same category and score as scoring every
+        // open category in order, for every possible roll and random scorecard masks
+        verifyEquivalence("Pruned category search", countPruningMismatches(evaluator));
+
+        // Scenario: the max scores only hold for rolls of the game, so with more dice the
+        // search scores every category. CHANCE's 43 beats the 40 of ALL_DIFFERENT, and
+        // THREE_OF_A_KIND keeps its tie with CHANCE, as it comes first
+        dr = new DiceRoll(new int[] {5,8,8,3,7,8,4});
+        result = evaluator.getHighestScoringCategory(dr);
+        verifyHighestScoringCategory(dr, ScoreCategory.CHANCE, result.category, result.score);
+        dr = new DiceRoll(new int[] {7,7,6,6,7,6,2});
+        result = evaluator.getHighestScoringCategory(dr);
+        verifyHighestScoringCategory(dr, ScoreCategory.THREE_OF_A_KIND, result.category, result.score);
+
+        // Scenario: rolls with other than TOTAL_NUMBER_OF_DICE dice or out of range values
+        // get the same result as scoring every open category in order, without pruning
+        verifyEquivalence("Search on other rolls", countOffGameMismatches(evaluator));
+
+        // Odds-related tests
+        RerollOddsEngine odds = new RerollOddsEngine();
+
+        // Scenario: holding four of the same number, one reroll hits ALL_SAME 1 in 8 times
+        int[] held = new int[] {3,3,3,3};
+        verifyProbability(held, ScoreCategory.ALL_SAME, 1, 1.0 / 8,
+                odds.getHitProbability(held, ScoreCategory.ALL_SAME, 1));
+
+        // A second reroll only needs to miss twice in a row to fail
+        verifyProbability(held, ScoreCategory.ALL_SAME, 2, 1 - (7.0 / 8) * (7.0 / 8),
+                odds.getHitProbability(held, ScoreCategory.ALL_SAME, 2));
+
+        // Scenario: with no rerolls left the held dice are the final roll
+        held = new int[] {1,1,1,8,8};
+        verifyProbability(held, ScoreCategory.FULL_HOUSE, 0, 1,
+                odds.getHitProbability(held, ScoreCategory.FULL_HOUSE, 0));
+
+        // Scenario: rerolling every die gives the average CHANCE score of 5 * 4.5
+        held = new int[] {};
+        verifyProbability(held, ScoreCategory.CHANCE, 1, 22.5,
+                odds.getExpectedScore(held, ScoreCategory.CHANCE, 1));
+
+        // Scenario: with the most rerolls allowed, ALL_SAME is only missed when every
+        // one of them misses
+        held = new int[] {3,3,3,3};
+        verifyProbability(held, ScoreCategory.ALL_SAME, RerollOddsEngine.MAX_REROLLS,
+                1 - Math.pow(7.0 / 8, RerollOddsEngine.MAX_REROLLS),
+                odds.getHitProbability(held, ScoreCategory.ALL_SAME, RerollOddsEngine.MAX_REROLLS));
+
+        // Scenario: once another reroll no longer changes the odds, no more vectors are
+        // built, and asking for more rerolls than allowed is rejected
+        RerollOddsEngine convergingOdds = new RerollOddsEngine();
+        convergingOdds.getHitProbability(new int[] {}, ScoreCategory.ONES, RerollOddsEngine.MAX_REROLLS);
+        verifyEquals("Reroll vectors built for ONES stop before the maximum", true,
+                convergingOdds.getCachedVectorCount() < RerollOddsEngine.MAX_REROLLS);
+        verifyEquals("Reroll odds beyond the maximum are rejected", true,
+                isRejected(convergingOdds, RerollOddsEngine.MAX_REROLLS + 1));
+
+        // Tournament tests
+        long tournamentSeed = 7;
+        long tournamentGames = 3 * 4096 + 100;
+        ForkJoinPool singleThread = new ForkJoinPool(1);
+        ForkJoinPool fourThreads = new ForkJoinPool(4);
+        TournamentResult sequential = new TournamentRunner(singleThread, new GreedyScoringStrategy(evaluator),
+                new RandomScoringStrategy()).run(tournamentGames, tournamentSeed);
+        TournamentResult parallel = new TournamentRunner(fourThreads, new GreedyScoringStrategy(evaluator),
+                new RandomScoringStrategy()).run(tournamentGames, tournamentSeed);
+        singleThread.shutdown();
+        fourThreads.shutdown();
+
+        // Scenario: every batch seeds its own Random, so a tournament played on 1 thread
+        // and on 4 threads with the same seed ends with exactly the same results
+        verifyEquals("Tournament on 1 and 4 threads has the same results", true,
+                TournamentBenchmark.sameResults(sequential, parallel));
+
+        // Scenario: greedy scores every roll on its best open category, so it beats a
+        // bot that picks categories at random in the vast majority of games
+        verifyEquals("Greedy wins over 90% of games against Random", true, sequential.getWinRate(0) > 0.9);
+
+        // Scenario: a checkpointed run, and a run resumed from a checkpoint holding the
+        // first 2 batches, end with exactly the same results as a plain run
+        TournamentResult[] checkpointed = runCheckpointed(new TournamentRunner(new GreedyScoringStrategy(evaluator),
+                new RandomScoringStrategy()), tournamentGames, tournamentSeed, 2 * 4096);
+        verifyEquals("Checkpointed tournament has the same results", true,
+                checkpointed != null && TournamentBenchmark.sameResults(sequential, checkpointed[0]));
+        verifyEquals("Resumed tournament has the same results", true,
+                checkpointed != null && TournamentBenchmark.sameResults(sequential, checkpointed[1]));
+        verifyEquals("Resumed tournament skips the checkpointed games", 2 * 4096L,
+                checkpointed == null ? -1L : checkpointed[1].resumedGames);
+
+        // Evaluation processor tests
+        DiceRoll[] streamRolls = new DiceRoll[20000];
+        DiceRollGenerator streamGenerator = new DiceRollGenerator(new Random(5));
+        String[] expectedResults = new String[streamRolls.length];
+
+        for (int i = 0; i < streamRolls.length; i++)
+        {
+            streamRolls[i] = streamGenerator.roll();
+            result = evaluator.getHighestScoringCategory(streamRolls[i]);
+            expectedResults[i] = result.category + "=" + result.score;
+        }
+
+        String[] sortedResults = expectedResults.clone();
+        Arrays.sort(sortedResults);
+
+        for (EvaluationProcessor.Ordering ordering : EvaluationProcessor.Ordering.values())
+        {
+            ForkJoinPool workers = new ForkJoinPool(4);
+            EvaluationProcessor processor = new EvaluationProcessor(workers, ordering, 64, 4, null);
+            long[] maxOutstanding = new long[1];
+            String[] actualResults = runProcessor(processor, streamRolls, maxOutstanding);
+            workers.shutdown();
+
+            // Scenario: the stream completes, and every roll gets a result. ORDERED keeps the
+            // order of the rolls, UNORDERED keeps the same results in any order
+            verifyEquals(ordering + " processor completes", true, actualResults != null);
+
+            if (actualResults != null && ordering == EvaluationProcessor.Ordering.UNORDERED)
+            {
+                Arrays.sort(actualResults);
+            }
+
+            verifyEquals(ordering + " processor emits the expected results", true,
+                    Arrays.equals(ordering == EvaluationProcessor.Ordering.ORDERED ? expectedResults : sortedResults,
+                            actualResults));
+
+            // Scenario: once complete, nothing is left pending, in flight or ready
+            verifyEquals(ordering + " processor counters drain to 0", "0/0/0/0",
+                    processor.getPendingCount() + "/" + processor.getInFlightBatchCount() + "/"
+                            + processor.getInFlightCount() + "/" + processor.getReadyCount());
+
+            // Scenario: the rolls requested from upstream and not delivered yet never exceed
+            // the rolls the in-flight batches can hold
+            verifyEquals(ordering + " processor upstream demand within 4 * 64", true, maxOutstanding[0] <= 4 * 64);
+        }
+
+        // Leaderboard tests
+        Leaderboard leaderboard = new Leaderboard();
+        int[] allSameHit = new int[ScoreCategory.values().length];
+        allSameHit[ScoreCategory.ALL_SAME.ordinal()] = GameConstants.SCORE_ALL_SAME;
+        int[] noHits = new int[ScoreCategory.values().length];
+
+        leaderboard.submit("alice", 200, allSameHit);
+        leaderboard.submit("bob", 150, noHits);
+        leaderboard.submit("carol", 200, noHits);
+        leaderboard.submit("dave", 100, allSameHit);
+        leaderboard.submit("bob", 180, noHits);
+        leaderboard.submit("alice", 120, allSameHit);
+
+        // Scenario: players are ranked by their best score, players with the same best score
+        // share a rank, and the next rank skips the shared places
+        verifyEquals("Leaderboard ranks of alice/bob/carol/dave/erin", "1/3/1/4/-1",
+                leaderboard.getRank("alice") + "/" + leaderboard.getRank("bob") + "/" + leaderboard.getRank("carol")
+                        + "/" + leaderboard.getRank("dave") + "/" + leaderboard.getRank("erin"));
+
+        // Scenario: top-N is ordered by best score with the ranks above, whatever the order of
+        // the tied players
+        verifyEquals("Leaderboard top 3 scores and ranks", "200@1 200@1 180@3", describeTop(leaderboard.getTop(3)));
+
+        // Scenario: the category record holder is the player with the most hits
+        verifyEquals("Leaderboard ALL_SAME record", "1. alice (2)",
+                String.valueOf(leaderboard.getCategoryRecord(ScoreCategory.ALL_SAME)));
+
+        // Scenario: a snapshot restored into an empty leaderboard has the same ranks, games
+        // played, top-N and category records
+        verifyEquals("Leaderboard snapshot and restore round trip", describeLeaderboard(leaderboard),
+                describeLeaderboard(restoreSnapshot(leaderboard)));
+
+        // Monte Carlo simulation tests
+        ScoreCategory[] simulated = {
+            ScoreCategory.SIXES,
+            ScoreCategory.THREE_OF_A_KIND,
+            ScoreCategory.FULL_HOUSE,
+            ScoreCategory.STRAIGHT_SMALL,
+            ScoreCategory.ALL_DIFFERENT
+        };
+        SimulationReport simulation = new AdaptiveMonteCarloSimulator(1).run(simulated, 0.05,
+                AdaptiveMonteCarloSimulator.Z_95, 10000000);
+
+        // Scenario: every estimate is within its reported confidence interval of the exact
+        // expected score, computed over every canonical roll
+        for (int i = 0; i < simulated.length; i++)
+        {
+            double exact = getExactMean(simulated[i]);
+            verifyEquals("Simulated " + simulated[i] + " within CI of exact mean", true,
+                    Math.abs(simulation.means[i] - exact) <= simulation.halfWidths[i]);
+        }
+
+        // Scenario: stratification and the CHANCE control variate reach the target with
+        // fewer rolls than naive sampling would need
+        verifyEquals("Simulation uses fewer rolls than naive sampling", true, simulation.getRollsSaved() > 0);
+
+        // Analytics store tests
+        RollAnalyticsStore store = new RollAnalyticsStore();
+        DiceRollGenerator storeGenerator = new DiceRollGenerator(new Random(11));
+        long[] bestCategoryCounts = new long[ScoreCategory.values().length];
+        long chanceWithSixFirst = 0;
+
+        for (int i = 0; i < 100000; i++)
+        {
+            dr = storeGenerator.roll();
+            store.append(dr);
+            bestCategoryCounts[evaluator.getHighestScoringCategory(dr).category.ordinal()]++;
+
+            if (dr.getResultForRoll(0) == 6)
+            {
+                chanceWithSixFirst += evaluator.score(dr, ScoreCategory.CHANCE);
+            }
+        }
+
+        // Scenario: counting a seeded set of rolls by best category matches the highest
+        // scoring category DiceRollEvaluator picks for each roll
+        verifyEquals("Store best category counts match DiceRollEvaluator", Arrays.toString(bestCategoryCounts),
+                Arrays.toString(store.count(RollAnalyticsStore.RowFilter.ALL, RollAnalyticsStore.BEST_CATEGORY)));
+
+        // Scenario: summing CHANCE over the rows whose first die is a 6 matches the sum of
+        // the CHANCE scores of the same rolls
+        verifyEquals("Store CHANCE sum with a 6 first matches", chanceWithSixFirst,
+                store.sum(RollAnalyticsStore.equalTo(RollAnalyticsStore.dieColumn(0), 6),
+                        RollAnalyticsStore.NO_GROUP, RollAnalyticsStore.scoreColumn(ScoreCategory.CHANCE))[0]);
+
+        // Score distribution tests
+        ScoreDistributionEngine distributions = new ScoreDistributionEngine(new GreedyScoringStrategy(evaluator));
+
+        // Scenario: with only ALL_SAME left, the game scores 50 if the last roll has all
+        // the same numbers, which happens for 8 of the 8^5 possible rolls
+        ScoreDistribution distribution = distributions.compute(1 << ScoreCategory.ALL_SAME.ordinal());
+        verifyDistribution(distribution, "P(50)", 8.0 / 32768, distribution.getProbability(50));
+
+        // Scenario: with CHANCE and ALL_SAME left, greedy scores the first roll on ALL_SAME
+        // only when it scores 50, so the game scores 50 or more exactly when one of the rolls
+        // has all the same numbers
+        int chanceAndAllSame = (1 << ScoreCategory.CHANCE.ordinal()) | (1 << ScoreCategory.ALL_SAME.ordinal());
+        distribution = distributions.compute(chanceAndAllSame);
+        double noAllSame = 1 - 8.0 / 32768;
+        verifyDistribution(distribution, "P(>= 50)", 1 - noAllSame * noAllSame,
+                1 - distribution.getCumulativeProbability(49));
+
+        // Bit-sliced tests
+
+        // Scenario: every possible roll scores the same on every category with the
+        // bit-sliced evaluator, and gets the same highest scoring category
+        verifyEquivalence("BitSlicedEvaluator", BitSlicedBenchmark.verifyAllRolls());
+
+        // Immutable roll tests
+
+        // Scenario: the cached scores of every possible immutable roll match the scores
+        // of the same DiceRoll, both the first time and once they are cached
+        verifyEquivalence("ImmutableDiceRoll", countImmutableMismatches(evaluator));
+
+        // Scenario: changing the array used to create an immutable roll, or the one
+        // returned by it, does not change its results or its cached scores
+        int[] results = new int[] {2,2,2,5,5};
+        ImmutableDiceRoll immutable = new ImmutableDiceRoll(results);
+        evaluator.getHighestScoringCategory(immutable);
+        results[0] = 5;
+        immutable.getResults()[1] = 5;
+        result = evaluator.getHighestScoringCategory(immutable);
+        verifyHighestScoringCategory(immutable, ScoreCategory.FULL_HOUSE, result.category, result.score);
+
+        // Scenario: scores cached under another key, before or after the evaluator
+        // cached its own, are never returned by the evaluator
+        immutable = new ImmutableDiceRoll(new int[] {6,6,6,6,6});
+        Object foreignKey = new Object();
+        immutable.cacheScore(foreignKey, ScoreCategory.ALL_SAME, 0);
+        verifyScore(immutable, ScoreCategory.ALL_SAME, evaluator.score(immutable, ScoreCategory.ALL_SAME), 50);
+        immutable.cacheScore(foreignKey, ScoreCategory.ALL_SAME, 0);
+        immutable.cacheScore(foreignKey, ScoreCategory.SIXES, 40);
+        result = evaluator.getHighestScoringCategory(immutable);
+        verifyHighestScoringCategory(immutable, ScoreCategory.ALL_SAME, result.category, result.score);
+        verifyScore(immutable, ScoreCategory.SIXES, evaluator.score(immutable, ScoreCategory.SIXES), 30);
+
+        // Scenario: a cached roll skips the same categories as an uncached one, both
+        // when it is first evaluated and once its scores are cached
+        immutable = new ImmutableDiceRoll(new int[] {1,2,3,4,5});
+        verifyEquals("Pruned evaluations on first evaluation of 1,2,3,4,5", 13,
+                evaluator.getHighestScoringCategory(immutable).prunedEvaluations);
+        verifyEquals("Pruned evaluations on cached evaluation of 1,2,3,4,5", 13,
+                evaluator.getHighestScoringCategory(immutable).prunedEvaluations);
+
+        // Win probability tests
+        WinProbabilityEngine winEngine = new WinProbabilityEngine(distributions, 2);
+
+        // Scenario: 49 points behind a finished opponent with only ALL_SAME left, the
+        // game is won exactly when the turn, i.e. rolling every die and rerolling twice,
+        // ends with all the same numbers. Tables are stored as floats, hence the looser
+        // tolerance
+        int allSame = 1 << ScoreCategory.ALL_SAME.ordinal();
+        verifyWinProbability(allSame, -49, odds.getHitProbability(new int[] {}, ScoreCategory.ALL_SAME, 3),
+                winEngine.getWinProbability(allSame, 0, -49));
+
+        // Scenario: 10 points behind a finished opponent with ONES and FIVES left, scoring
+        // 5 on FIVES can at best tie on ONES, so the engine scores 1 on ONES instead and
+        // keeps FIVES to catch up
+        int onesAndFives = (1 << ScoreCategory.ONES.ordinal()) | (1 << ScoreCategory.FIVES.ordinal());
+        dr = new DiceRoll(new int[] {1,2,3,4,5});
+        ScoreCategory choice = winEngine.chooseCategory(dr, onesAndFives, 0, -10);
+        verifyHighestScoringCategory(dr, ScoreCategory.ONES, choice, evaluator.score(dr, choice));
+
+        // Scenario: 45 points behind a finished opponent with ALL_SAME and CHANCE left,
+        // the game can only be won with ALL_SAME, so with rerolls left the engine breaks
+        // up a 37 on CHANCE to chase it, while a player maximizing the expected score
+        // keeps the whole roll
+        int allSameAndChance = allSame | (1 << ScoreCategory.CHANCE.ordinal());
+        WinProbabilityEngine scoreEngine = new WinProbabilityEngine(ForkJoinPool.commonPool(), distributions, 2, 0);
+        dr = new DiceRoll(new int[] {8,8,8,7,6});
+        verifyEquals("Hold 8,8,8,7,6 45 behind, maximizing win probability", "[8, 8, 8]",
+                Arrays.toString(winEngine.chooseHold(dr, 2, allSameAndChance, 0, -45)));
+        verifyEquals("Hold 8,8,8,7,6 45 behind, maximizing expected score", "[6, 7, 8, 8, 8]",
+                Arrays.toString(scoreEngine.chooseHold(dr, 2, allSameAndChance, 0, -45)));
+
+        // Scenario: queries for overlapping masks made at the same time from several
+        // threads get the same win probabilities as made one by one, and every shared
+        // sub-mask is only solved once
+        int[] queryMasks = {0x0F, 0x1E, 0x3C, 0x78, 0xF0, 0x33, 0x55, 0xAA};
+        WinProbabilityEngine sequentialEngine = new WinProbabilityEngine(ForkJoinPool.commonPool(),
+                distributions, 0, 4);
+        double[] expectedValues = new double[queryMasks.length];
+
+        for (int i = 0; i < queryMasks.length; i++)
+        {
+            expectedValues[i] = sequentialEngine.getWinProbability(queryMasks[i], 0x0F00, -20);
+        }
+
+        ForkJoinPool solverPool = new ForkJoinPool(4);
+        WinProbabilityEngine concurrentEngine = new WinProbabilityEngine(solverPool, distributions, 0, 4);
+        verifyEquals("Concurrent win probability queries match sequential ones", true,
+                Arrays.equals(expectedValues, queryConcurrently(concurrentEngine, queryMasks, 0x0F00, -20)));
+        solverPool.shutdown();
+        verifyEquals("Concurrent win probability queries solve each mask once",
+                sequentialEngine.getSolvedMaskCount(), concurrentEngine.getSolvedMaskCount());
+
         finish();
     }
 
+    /**
+     * Describes leaderboard entries as "value@rank", in order.
+     */
+    private static String describeTop(List<LeaderboardEntry> entries)
+    {
+        StringBuilder sb = new StringBuilder();
+
+        for (LeaderboardEntry entry : entries)
+        {
+            sb.append(sb.length() == 0 ? "" : " ").append(entry.value).append('@').append(entry.rank);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Describes the rank and games played of the players used in the leaderboard
+     * tests, the top 10 and the ALL_SAME record.
+     */
+    private static String describeLeaderboard(Leaderboard leaderboard)
+    {
+        if (leaderboard == null)
+        {
+            return "not restored";
+        }
+
+        StringBuilder sb = new StringBuilder();
+
+        for (String player : new String[] {"alice", "bob", "carol", "dave"})
+        {
+            sb.append(player).append(':').append(leaderboard.getRank(player)).append('/')
+                    .append(leaderboard.getGamesPlayed(player)).append(' ');
+        }
+
+        return sb.append(describeTop(leaderboard.getTop(10))).append(' ')
+                .append(leaderboard.getCategoryRecord(ScoreCategory.ALL_SAME)).toString();
+    }
+
+    /**
+     * Plays a checkpointed tournament from scratch, then plays it again resumed
+     * from a checkpoint of its first games. The partial checkpoint is written by
+     * a run of only those games, which plays the same first batches, with the
+     * game count changed to the full run's.
+     *
+     * @param runner      The TournamentRunner to play with.
+     * @param games       The number of games, at most 64 batches.
+     * @param seed        The tournament seed.
+     * @param resumeGames The number of games in the partial checkpoint, a multiple
+     *                    of the batch size.
+     *
+     * @return The checkpointed and the resumed results, or null if a checkpoint
+     *         could not be read or written.
+     */
+    private static TournamentResult[] runCheckpointed(TournamentRunner runner, long games, long seed,
+        long resumeGames)
+    {
+        try
+        {
+            Path directory = Files.createTempDirectory("tournament");
+            Path file = directory.resolve("checkpoint.bin");
+
+            try
+            {
+                TournamentResult checkpointed = runner.run(games, seed, file, 60000);
+                Files.delete(file);
+
+                runner.run(resumeGames, seed, file, 60000);
+                byte[] bytes = Files.readAllBytes(file);
+                // The game count follows the magic number and the version
+                ByteBuffer.wrap(bytes).putLong(8, games);
+                Files.write(file, bytes);
+
+                return new TournamentResult[] {checkpointed, runner.run(games, seed, file, 60000)};
+            }
+            finally
+            {
+                Files.deleteIfExists(file);
+                Files.deleteIfExists(directory);
+            }
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Returns whether the odds engine rejects a query with the given number of
+     * rerolls.
+     */
+    private static boolean isRejected(RerollOddsEngine odds, int rerolls)
+    {
+        try
+        {
+            odds.getHitProbability(new int[] {}, ScoreCategory.ONES, rerolls);
+            return false;
+        }
+        catch (IllegalArgumentException e)
+        {
+            return true;
+        }
+    }
+
+    /**
+     * Queries the win probability of every mask at the same time, each from its
+     * own thread.
+     *
+     * @return The win probability of each mask, or null if interrupted.
+     */
+    private static double[] queryConcurrently(final WinProbabilityEngine engine, final int[] masks,
+        final int opponentMask, final int delta)
+    {
+        final double[] values = new double[masks.length];
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[masks.length];
+
+        for (int i = 0; i < masks.length; i++)
+        {
+            final int index = i;
+            threads[i] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        values[index] = engine.getWinProbability(masks[index], opponentMask, delta);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        values[index] = Double.NaN;
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        start.countDown();
+
+        try
+        {
+            for (Thread thread : threads)
+            {
+                thread.join();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        return values;
+    }
+
+    /**
+     * Snapshots the leaderboard to a temporary file and restores it into a new
+     * one.
+     *
+     * @return The restored leaderboard, or null if the snapshot failed.
+     */
+    private static Leaderboard restoreSnapshot(Leaderboard leaderboard)
+    {
+        try
+        {
+            Path file = Files.createTempFile("leaderboard", ".bin");
+
+            try
+            {
+                leaderboard.snapshot(file);
+                Leaderboard restored = new Leaderboard();
+                restored.restore(file);
+                return restored;
+            }
+            finally
+            {
+                Files.deleteIfExists(file);
+            }
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the exact expected score of a single roll in the given category.
+     */
+    private static double getExactMean(ScoreCategory category)
+    {
+        CanonicalRollSpace space = CanonicalRollSpace.getInstance();
+        double outcomes = Math.pow(space.getValuesPerDie(), space.getNumberOfDice());
+        double mean = 0;
+
+        for (int roll = 0; roll < space.getRollCount(); roll++)
+        {
+            mean += space.getRollPermutations(roll) / outcomes * space.getScore(roll, category);
+        }
+
+        return mean;
+    }
+
+    /**
+     * Finds the highest scoring open category of every possible roll, with a few
+     * random scorecard masks each, and compares it with the result of scoring
+     * every open category in order, counting the rolls where any result differs.
+     */
+    private static int countPruningMismatches(DiceRollEvaluator evaluator)
+    {
+        int dice = GameConstants.TOTAL_NUMBER_OF_DICE;
+        int faces = GameConstants.VALUES_PER_DIE;
+        int total = (int) Math.pow(faces, dice);
+        Random random = new Random(3);
+        int mismatches = 0;
+
+        for (int code = 0; code < total; code++)
+        {
+            int[] faceValues = new int[dice];
+
+            for (int d = 0, rest = code; d < dice; d++, rest /= faces)
+            {
+                faceValues[d] = rest % faces + 1;
+            }
+
+            DiceRoll diceRoll = new DiceRoll(faceValues);
+            boolean match = true;
+
+            for (int pass = 0; pass < 4; pass++)
+            {
+                int mask = pass == 0 ? GameConstants.ALL_CATEGORIES_OPEN
+                        : random.nextInt(GameConstants.ALL_CATEGORIES_OPEN) + 1;
+                EvaluationResult expected = scanCategories(evaluator, diceRoll, mask);
+                EvaluationResult actual = evaluator.getHighestScoringCategory(diceRoll, mask);
+                match &= actual.category == expected.category && actual.score == expected.score;
+            }
+
+            if (!match)
+            {
+                mismatches++;
+            }
+        }
+
+        return mismatches;
+    }
+
+    /**
+     * Finds the highest scoring open category of random rolls that are not rolls
+     * of the game, with 1 to 7 dice and values from 0 to VALUES_PER_DIE + 1, both
+     * as a DiceRoll and, when the values are valid, as an ImmutableDiceRoll. Each
+     * is compared with the result of scoring every open category in order, and
+     * must not report pruned evaluations, counting the rolls where any differs.
+     */
+    private static int countOffGameMismatches(DiceRollEvaluator evaluator)
+    {
+        Random random = new Random(13);
+        int mismatches = 0;
+
+        for (int i = 0; i < 50000; i++)
+        {
+            int dice = random.nextInt(7) + 1;
+
+            if (dice == GameConstants.TOTAL_NUMBER_OF_DICE)
+            {
+                dice++;
+            }
+
+            // Only a few rolls get out of range values, so valid ones are also
+            // checked as immutable rolls
+            boolean valid = random.nextInt(4) != 0;
+            int[] faceValues = new int[dice];
+
+            for (int d = 0; d < dice; d++)
+            {
+                faceValues[d] = valid ? random.nextInt(GameConstants.VALUES_PER_DIE) + 1
+                        : random.nextInt(GameConstants.VALUES_PER_DIE + 2);
+            }
+
+            int mask = i % 2 == 0 ? GameConstants.ALL_CATEGORIES_OPEN
+                    : random.nextInt(GameConstants.ALL_CATEGORIES_OPEN) + 1;
+            EvaluationResult expected = scanCategories(evaluator, new DiceRoll(faceValues), mask);
+            List<DiceRoll> rolls = new ArrayList<DiceRoll>();
+            rolls.add(new DiceRoll(faceValues));
+
+            for (int d = 0; valid && d < dice; d++)
+            {
+                valid = faceValues[d] >= 1 && faceValues[d] <= GameConstants.VALUES_PER_DIE;
+            }
+
+            if (valid)
+            {
+                // Twice, the second time from the cached scores
+                ImmutableDiceRoll immutable = new ImmutableDiceRoll(faceValues);
+                rolls.add(immutable);
+                rolls.add(immutable);
+            }
+
+            boolean match = true;
+
+            for (DiceRoll diceRoll : rolls)
+            {
+                EvaluationResult actual = evaluator.getHighestScoringCategory(diceRoll, mask);
+                match &= actual.category == expected.category && actual.score == expected.score
+                        && actual.prunedEvaluations == 0;
+            }
+
+            if (!match)
+            {
+                mismatches++;
+            }
+        }
+
+        return mismatches;
+    }
+
+    /**
+     * Scores every open category in the order of ALL_SCORE_CATEGORIES and keeps
+     * the first one with the highest score, starting from a score of 0 on the
+     * first open one, like the search did before it was pruned.
+     */
+    private static EvaluationResult scanCategories(DiceRollEvaluator evaluator, DiceRoll diceRoll, int mask)
+    {
+        EvaluationResult result = new EvaluationResult();
+
+        for (ScoreCategory category : GameConstants.ALL_SCORE_CATEGORIES)
+        {
+            if ((mask & (1 << category.ordinal())) == 0)
+            {
+                continue;
+            }
+
+            int score = evaluator.score(diceRoll, category);
+
+            if (result.category == null)
+            {
+                result.category = category;
+            }
+
+            if (score > result.score)
+            {
+                result.category = category;
+                result.score = score;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Evaluates every possible roll as both a DiceRoll and an ImmutableDiceRoll,
+     * twice for the latter, and with a few scorecard masks, counting the rolls
+     * where any result, or the number of pruned evaluations, differs.
+     */
+    private static int countImmutableMismatches(DiceRollEvaluator evaluator)
+    {
+        int dice = GameConstants.TOTAL_NUMBER_OF_DICE;
+        int faces = GameConstants.VALUES_PER_DIE;
+        int[] masks = {
+            GameConstants.ALL_CATEGORIES_OPEN,
+            GameConstants.ALL_CATEGORIES_OPEN & ~(1 << ScoreCategory.CHANCE.ordinal()),
+            1 << ScoreCategory.ALL_SAME.ordinal()
+        };
+
+        int total = (int) Math.pow(faces, dice);
+        int mismatches = 0;
+
+        for (int code = 0; code < total; code++)
+        {
+            int[] faceValues = new int[dice];
+
+            for (int d = 0, rest = code; d < dice; d++, rest /= faces)
+            {
+                faceValues[d] = rest % faces + 1;
+            }
+
+            DiceRoll mutable = new DiceRoll(faceValues);
+            ImmutableDiceRoll immutable = new ImmutableDiceRoll(faceValues);
+            boolean match = true;
+
+            for (int pass = 0; pass < 2; pass++)
+            {
+                for (ScoreCategory category : ScoreCategory.values())
+                {
+                    match &= evaluator.score(mutable, category) == evaluator.score(immutable, category);
+                }
+
+                for (int mask : masks)
+                {
+                    EvaluationResult expected = evaluator.getHighestScoringCategory(mutable, mask);
+                    EvaluationResult actual = evaluator.getHighestScoringCategory(immutable, mask);
+                    match &= expected.category == actual.category && expected.score == actual.score
+                            && expected.prunedEvaluations == actual.prunedEvaluations;
+                }
+            }
+
+            if (!match)
+            {
+                mismatches++;
+            }
+        }
+
+        return mismatches;
+    }
+
+    /**
+     * Publishes the rolls to the processor from a separate thread, only as fast
+     * as the processor requests them, and collects the results downstream in
+     * small requests.
+     *
+     * @param processor      The EvaluationProcessor to run.
+     * @param rolls          The rolls to publish.
+     * @param maxOutstanding Set to the highest number of rolls requested from
+     *                       upstream that had not been delivered downstream yet.
+     *
+     * @return Each result as "CATEGORY=score", in the order they were delivered,
+     *         or null if the stream did not complete in time.
+     */
+    private static String[] runProcessor(EvaluationProcessor processor, final DiceRoll[] rolls,
+        final long[] maxOutstanding)
+    {
+        final Semaphore demand = new Semaphore(0);
+        final AtomicLong upstreamRequested = new AtomicLong();
+        final AtomicLong downstreamReceived = new AtomicLong();
+        final AtomicBoolean upstreamCancelled = new AtomicBoolean();
+        final String[] results = new String[rolls.length];
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        processor.subscribe(new Flow.Subscriber<EvaluationResult>()
+        {
+            private static final int REQUEST_SIZE = 100;
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription)
+            {
+                this.subscription = subscription;
+                subscription.request(REQUEST_SIZE);
+            }
+
+            @Override
+            public void onNext(EvaluationResult item)
+            {
+                long index = downstreamReceived.getAndIncrement();
+                results[(int) index] = item.category + "=" + item.score;
+
+                if ((index + 1) % REQUEST_SIZE == 0)
+                {
+                    subscription.request(REQUEST_SIZE);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable)
+            {
+                completed.countDown();
+            }
+
+            @Override
+            public void onComplete()
+            {
+                completed.countDown();
+            }
+        });
+
+        final Flow.Subscriber<DiceRoll> input = processor;
+        Thread publisher = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                input.onSubscribe(new Flow.Subscription()
+                {
+                    @Override
+                    public void request(long n)
+                    {
+                        long outstanding = upstreamRequested.addAndGet(n) - downstreamReceived.get();
+
+                        synchronized (maxOutstanding)
+                        {
+                            maxOutstanding[0] = Math.max(maxOutstanding[0], outstanding);
+                        }
+
+                        demand.release((int) Math.min(n, Integer.MAX_VALUE));
+                    }
+
+                    @Override
+                    public void cancel()
+                    {
+                        upstreamCancelled.set(true);
+                        demand.release(rolls.length);
+                    }
+                });
+
+                for (DiceRoll roll : rolls)
+                {
+                    demand.acquireUninterruptibly();
+
+                    if (upstreamCancelled.get())
+                    {
+                        return;
+                    }
+
+                    input.onNext(roll);
+                }
+
+                input.onComplete();
+            }
+        });
+
+        publisher.start();
+
+        try
+        {
+            boolean done = completed.await(60, TimeUnit.SECONDS);
+            publisher.join(1000);
+            return done && downstreamReceived.get() == rolls.length ? results : null;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
     private static void init()
     {
         totalTestsRun = 0;
@@ -223,6 +1132,58 @@ public class TestUtils
         updateStats(pass);
     }
 
+    private static void verifyProbability(int[] held, ScoreCategory category, int rerolls, double expected, double actual)
+    {
+        boolean pass = Math.abs(actual - expected) < 1e-9;
+        String status = pass ? "PASSED" : "--FAILED--";
+        String format = "Held: %-10s Category: %-18s Rerolls: %-2s Expected: %-10.6f Actual: %-10.6f Status %s%n";
+        System.out.printf(format, Arrays.toString(held), category, rerolls, expected, actual, status);
+
+        updateStats(pass);
+    }
+
+    private static void verifyDistribution(ScoreDistribution distribution, String description, double expected,
+        double actual)
+    {
+        boolean pass = Math.abs(actual - expected) < 1e-9;
+        String status = pass ? "PASSED" : "--FAILED--";
+        String format = "Open: %-18s Distribution: %-10s Expected: %-10.8f Actual: %-10.8f Status %s%n";
+        System.out.printf(format, Integer.toBinaryString(distribution.openCategories), description, expected, actual,
+                status);
+
+        updateStats(pass);
+    }
+
+    private static void verifyWinProbability(int openCategories, int scoreDelta, double expected, double actual)
+    {
+        boolean pass = Math.abs(actual - expected) < 1e-6;
+        String status = pass ? "PASSED" : "--FAILED--";
+        String format = "Open: %-18s Delta: %-5s Expected Win Probability: %-10.8f Actual: %-10.8f Status %s%n";
+        System.out.printf(format, Integer.toBinaryString(openCategories), scoreDelta, expected, actual, status);
+
+        updateStats(pass);
+    }
+
+    private static void verifyEquals(String description, Object expected, Object actual)
+    {
+        boolean pass = expected.equals(actual);
+        String status = pass ? "PASSED" : "--FAILED--";
+        String format = "%-60s Expected: %-12s Actual: %-12s Status %s%n";
+        System.out.printf(format, description, expected, actual, status);
+
+        updateStats(pass);
+    }
+
+    private static void verifyEquivalence(String name, int mismatches)
+    {
+        boolean pass = mismatches == 0;
+        String status = pass ? "PASSED" : "--FAILED--";
+        String format = "%s matches DiceRollEvaluator on every roll. Mismatches: %-6s Status %s%n";
+        System.out.printf(format, name, mismatches, status);
+
+        updateStats(pass);
+    }
+
     private static void updateStats(boolean passed)
     {
         totalTestsRun++;
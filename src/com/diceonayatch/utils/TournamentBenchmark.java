@@ -0,0 +1,83 @@
+package com.diceonayatch.utils;
+
+import com.diceonayatch.model.TournamentResult;
+import com.diceonayatch.service.GreedyScoringStrategy;
+import com.diceonayatch.service.RandomScoringStrategy;
+import com.diceonayatch.service.TournamentRunner;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how TournamentRunner scales with the number of threads. The same
+ * tournament is played on pools of 1, 2, 4, ... threads up to the number of
+ * available processors, and the games per second of each run are compared
+ * with the single threaded run. Every run must also produce exactly the same
+ * results, as they all use the same seed.
+ *
+ * Usage: TournamentBenchmark [games] [seed]
+ *
+ * @author agent 10/19/26.
+ */
+public class TournamentBenchmark
+{
+    public static void main(String[] args)
+    {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 200000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("Games: %d  Seed: %d  Available processors: %d%n", games, seed, processors);
+
+        TournamentResult baseline = null;
+        double baselineRate = 0;
+
+        for (int threads = 1; ; threads = Math.min(threads * 2, processors))
+        {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+
+            try
+            {
+                TournamentRunner runner = new TournamentRunner(pool, new GreedyScoringStrategy(),
+                        new RandomScoringStrategy());
+
+                // Warm up the JIT before the measured run
+                runner.run(games / 10, seed + 1);
+                TournamentResult result = runner.run(games, seed);
+
+                if (baseline == null)
+                {
+                    baseline = result;
+                    baselineRate = result.getGamesPerSecond();
+                }
+
+                double rate = result.getGamesPerSecond();
+                System.out.printf("Threads: %-3d %10.0f games/s  Speedup: %5.2fx  Efficiency: %5.1f%%  Same results: %s%n",
+                        threads, rate, rate / baselineRate, 100 * rate / baselineRate / threads,
+                        sameResults(baseline, result));
+            }
+            finally
+            {
+                pool.shutdown();
+            }
+
+            if (threads == processors)
+            {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns whether two tournaments ended with the same wins, ties and score
+     * histograms for every strategy.
+     */
+    public static boolean sameResults(TournamentResult a, TournamentResult b)
+    {
+        return a.games == b.games
+                && Arrays.equals(a.wins, b.wins)
+                && Arrays.equals(a.ties, b.ties)
+                && Arrays.deepEquals(a.scoreHistograms, b.scoreHistograms)
+                && Arrays.deepEquals(a.categoryScoreTotals, b.categoryScoreTotals);
+    }
+}